@@ -2,4 +2,12 @@ md bin
 
 javac -d bin -cp "CommandLineJunit\*" src\*.java
 
-java -cp "CommandLineJunit\*;bin" TestRunner
+rem The vector engine needs the incubating Vector API, from Java 17 on.
+rem Without it the tests run anyway and skip that engine.
+javac -d bin -cp bin --add-modules jdk.incubator.vector vector\*.java
+if errorlevel 1 (
+    echo No Vector API here, so testing without the vector engine
+    java -cp "CommandLineJunit\*;bin" TestRunner
+) else (
+    java --add-modules jdk.incubator.vector -cp "CommandLineJunit\*;bin" TestRunner
+)
@@ -2,4 +2,11 @@ mkdir bin
 
 javac -d bin -cp "CommandLineJunit/*" src/*.java
 
-java -cp "CommandLineJunit/*:bin" TestRunner
+# The vector engine needs the incubating Vector API, from Java 17 on.
+# Without it the tests run anyway and skip that engine.
+if javac -d bin -cp bin --add-modules jdk.incubator.vector vector/*.java; then
+    java --add-modules jdk.incubator.vector -cp "CommandLineJunit/*:bin" TestRunner
+else
+    echo "No Vector API here, so testing without the vector engine"
+    java -cp "CommandLineJunit/*:bin" TestRunner
+fi
@@ -0,0 +1,7 @@
+mkdir bin
+
+javac -d bin -cp "CommandLineJunit/*" src/*.java
+
+javac -d bin -cp bin --add-modules jdk.incubator.vector vector/*.java
+
+java --add-modules jdk.incubator.vector -cp bin GameOfLife --engine vector "$@"
@@ -0,0 +1,516 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.zip.*;
+
+public class Autosave implements StepListener, ChangeVisitor {
+
+	// Saves a running world every so many generations or
+	// seconds, without making the simulation wait for the
+	// disk. A save is a base snapshot (name.snap) plus a log
+	// of the cells changed since (name.log); restore() loads
+	// the snapshot and replays the log.
+	//
+	// The simulation thread notes which tiles each step
+	// changed, as World reports them, then at a checkpoint
+	// compares just those tiles with a copy of what was last
+	// saved and hands the differences to a writer thread.
+	// Edits, loads and undos are not reported tile by tile,
+	// so after one the whole world is compared once.
+	// If the writer is still busy with the last checkpoint
+	// the new one is skipped; the next one then picks up
+	// every change since the last one written.
+	//
+	// Each log record is, little endian,
+	//
+	//     int magic, long generation, int count,
+	//     count x (int row, int word, long flips), int crc
+	//
+	// where the CRC-32 covers everything before it. Replay
+	// stops at the first record which is cut short or does
+	// not match, as the last one will be after a crash.
+	//
+	// Once the log is bigger than the snapshot, the next
+	// checkpoint writes a new snapshot instead. The log is
+	// emptied first, so a crash in between loses the latest
+	// changes but never mixes a log with the wrong snapshot.
+
+	private static final int MAGIC = 0x474f4c44;
+
+	private static final int RECORD_HEADER = 4 + 8 + 4;
+
+	private static final int ENTRY_SIZE = 4 + 4 + 8;
+
+	// Most bytes of the log mapped at once
+	private static final long MAX_CHUNK = 1L << 30;
+
+	private final Path _base;
+
+	private final Path _log;
+
+	private final long _everyGenerations;
+
+	private final long _everyNanos;
+
+	// What the last checkpoint saved. Only the simulation
+	// thread changes it, and only while the writer is idle,
+	// so the writer can read it while writing a snapshot.
+	private BitGrid _saved;
+
+	private Rule _savedRule;
+
+	// Tiles changed by steps since the last checkpoint, or
+	// every tile if _allChanged
+	private final BitSet _changedTiles = new BitSet();
+
+	private boolean _allChanged = true;
+
+	private int _wordsPerRow;
+
+	// The world's edit count when the tiles were last
+	// followed, to tell when it changed other than by a step
+	private long _editCount;
+
+	private long _lastGeneration;
+
+	private long _lastTime;
+
+	// Whether the next checkpoint must be a snapshot
+	private volatile boolean _needBase = true;
+
+	// Set while a checkpoint is waiting for the writer or
+	// being written
+	private final AtomicBoolean _busy = new AtomicBoolean(false);
+
+	private final ArrayBlockingQueue<Checkpoint> _queue = new ArrayBlockingQueue<Checkpoint>(1);
+
+	private final Checkpoint _checkpoint = new Checkpoint();
+
+	private volatile IOException _error;
+
+	private Thread _writer;
+
+	// Writer thread only
+	private FileChannel _logChannel;
+
+	private ByteBuffer _record = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+
+	private long _logBytes;
+
+	/**
+	 * Save to name.snap and name.log, at least every everyGenerations generations
+	 * and every everySeconds seconds while the world is running.
+	 */
+
+	public Autosave(String name, long everyGenerations, double everySeconds) {
+		_base = Paths.get(name + ".snap");
+		_log = Paths.get(name + ".log");
+		_everyGenerations = Math.max(1, everyGenerations);
+		_everyNanos = (long) (everySeconds * 1e9);
+	}
+
+	/**
+	 * Whether there is a saved world to restore.
+	 */
+
+	public static boolean exists(String name) {
+		return Files.exists(Paths.get(name + ".snap"));
+	}
+
+	/**
+	 * The last error the writer hit, or null. The next checkpoint after an error
+	 * writes a whole new snapshot.
+	 */
+
+	public IOException getError() {
+		return _error;
+	}
+
+	/**
+	 * Start saving the world, with a snapshot of it as it is now. The caller must
+	 * hold the world's lock.
+	 */
+
+	public void start(World world) {
+		_writer = new Thread(new Writer(), "Autosave");
+		_writer.setDaemon(true);
+		_writer.start();
+		world.addStepListener(this);
+		checkpoint(world);
+	}
+
+	/**
+	 * Stop saving the world, after one last checkpoint has been written. Takes the
+	 * world's lock itself.
+	 */
+
+	public void stop(World world) throws InterruptedException {
+		world.getLock().lock();
+		try {
+			world.removeStepListener(this);
+		} finally {
+			world.getLock().unlock();
+		}
+		awaitIdle();
+		world.getLock().lock();
+		try {
+			checkpoint(world);
+		} finally {
+			world.getLock().unlock();
+		}
+		awaitIdle();
+		_writer.interrupt();
+		_writer.join();
+	}
+
+	public void stepped(World world) {
+		noteChanges(world);
+		if (world.getGeneration() - _lastGeneration >= _everyGenerations
+				|| (_everyNanos > 0 && System.nanoTime() - _lastTime >= _everyNanos)) {
+			checkpoint(world);
+		}
+	}
+
+	/**
+	 * Note the tiles the last step changed, or that everything may have changed
+	 * if the world was edited since the step before.
+	 */
+
+	private void noteChanges(World world) {
+		if (world.getEditCount() != _editCount || !world.isTracking()) {
+			// Without tracking, every word would be
+			// reported, so comparing them all later is
+			// no more work
+			_allChanged = true;
+			_editCount = world.getEditCount();
+		} else if (!_allChanged) {
+			_wordsPerRow = world.getCells().getWordsPerRow();
+			world.forEachChange(this);
+		}
+	}
+
+	public void changed(int row, int word, long flips) {
+		_changedTiles.set((row / World.TILE_ROWS) * _wordsPerRow + word);
+	}
+
+	/**
+	 * Hand the changes since the last checkpoint to the writer, unless it is
+	 * still busy. The caller must hold the world's lock. Returns whether a
+	 * checkpoint was taken.
+	 */
+
+	public boolean checkpoint(World world) {
+		if (!_busy.compareAndSet(false, true)) {
+			return false;
+		}
+		BitGrid cells = world.getCells();
+		Checkpoint cp = _checkpoint;
+		cp.generation = world.getGeneration();
+		cp.count = 0;
+
+		if (_needBase || _saved == null || _saved.getRows() != cells.getRows() || _savedRule != world.getRule()) {
+			if (_saved == null || _saved.getRows() != cells.getRows()) {
+				_saved = cells.blank();
+			}
+			_saved.copyFrom(cells);
+			_savedRule = world.getRule();
+			cp.base = true;
+		} else if (_allChanged || world.getEditCount() != _editCount) {
+			cp.base = false;
+			diff(cells, cp, 0, cells.getRows(), 0, cells.getWordsPerRow());
+		} else {
+			cp.base = false;
+			int wordsPerRow = cells.getWordsPerRow();
+			for (int t = _changedTiles.nextSetBit(0); t >= 0; t = _changedTiles.nextSetBit(t + 1)) {
+				int fromRow = (t / wordsPerRow) * World.TILE_ROWS;
+				int word = t % wordsPerRow;
+				diff(cells, cp, fromRow, Math.min(cells.getRows(), fromRow + World.TILE_ROWS), word, word + 1);
+			}
+		}
+		_changedTiles.clear();
+		_allChanged = false;
+		_editCount = world.getEditCount();
+
+		_lastGeneration = cp.generation;
+		_lastTime = System.nanoTime();
+		_queue.offer(cp);
+		return true;
+	}
+
+	/**
+	 * Add the words in the given rows and words which differ from _saved to the
+	 * checkpoint, and bring _saved up to date.
+	 */
+
+	private void diff(BitGrid cells, Checkpoint cp, int fromRow, int toRow, int fromWord, int toWord) {
+		for (int row = fromRow; row < toRow; row++) {
+			for (int word = fromWord; word < toWord; word++) {
+				long bits = cells.getWord(row, word);
+				long flips = bits ^ _saved.getWord(row, word);
+				if (flips != 0) {
+					cp.add(row, word, flips);
+					_saved.setWord(row, word, bits);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Wait until the writer has finished the last checkpoint handed to it.
+	 */
+
+	public synchronized void awaitIdle() throws InterruptedException {
+		while (_busy.get()) {
+			wait();
+		}
+	}
+
+	private synchronized void idle() {
+		_busy.set(false);
+		notifyAll();
+	}
+
+	/**
+	 * Load the snapshot saved under name and replay its log over it.
+	 */
+
+	public static World restore(String name) throws IOException {
+		return restore(name, false);
+	}
+
+	/**
+	 * Like restore(name), keeping the world off the heap if offHeap is true.
+	 */
+
+	public static World restore(String name, boolean offHeap) throws IOException {
+		return restore(name, offHeap, MAX_CHUNK);
+	}
+
+	/**
+	 * Like restore(name, offHeap), mapping at most about chunk bytes of the log
+	 * at once.
+	 */
+
+	static World restore(String name, boolean offHeap, long chunk) throws IOException {
+		World world = SnapshotFile.read(Paths.get(name + ".snap"), offHeap);
+		Path log = Paths.get(name + ".log");
+		if (!Files.exists(log)) {
+			return world;
+		}
+
+		BitGrid cells = world.getCells();
+		int rows = cells.getRows();
+		int wordsPerRow = cells.getWordsPerRow();
+		long generation = world.getGeneration();
+		// Records are checked, then replayed, this many
+		// bytes of entries at a time
+		long piece = Math.max(1, chunk / ENTRY_SIZE) * ENTRY_SIZE;
+		FileChannel ch = FileChannel.open(log, StandardOpenOption.READ);
+		try {
+			LogMap map = new LogMap(ch, chunk);
+			long size = ch.size();
+			long position = 0;
+			CRC32 crc = new CRC32();
+
+			while (size - position >= RECORD_HEADER) {
+				ByteBuffer header = map.get(position, RECORD_HEADER);
+				if (header.getInt() != MAGIC) {
+					break;
+				}
+				long recordGeneration = header.getLong();
+				int count = header.getInt();
+				long body = position + RECORD_HEADER;
+				long bodyBytes = (long) count * ENTRY_SIZE;
+				if (count < 0 || body + bodyBytes + 4 > size) {
+					break;
+				}
+				crc.reset();
+				crc.update(map.get(position, RECORD_HEADER));
+				for (long p = 0; p < bodyBytes; p += piece) {
+					crc.update(map.get(body + p, (int) Math.min(piece, bodyBytes - p)));
+				}
+				if (map.get(body + bodyBytes, 4).getInt() != (int) crc.getValue()) {
+					break;
+				}
+
+				for (long p = 0; p < bodyBytes; p += piece) {
+					ByteBuffer buf = map.get(body + p, (int) Math.min(piece, bodyBytes - p));
+					while (buf.hasRemaining()) {
+						int row = buf.getInt();
+						int word = buf.getInt();
+						long flips = buf.getLong();
+						if (row < 0 || row >= rows || word < 0 || word >= wordsPerRow) {
+							throw new IOException("Autosave log does not match its snapshot");
+						}
+						cells.setWord(row, word, cells.getWord(row, word) ^ flips);
+					}
+				}
+				position = body + bodyBytes + 4;
+				generation = recordGeneration;
+			}
+		} finally {
+			ch.close();
+		}
+		world.invalidate();
+		world.setGeneration(generation);
+		return world;
+	}
+
+	/**
+	 * Write a snapshot of _saved, after emptying the log.
+	 */
+
+	private void writeBase(Checkpoint cp) throws IOException {
+		if (_logChannel != null) {
+			_logChannel.close();
+			_logChannel = null;
+		}
+		_logChannel = FileChannel.open(_log, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		_logChannel.force(true);
+		_logBytes = 0;
+		SnapshotFile.write(_base, _saved, cp.generation, _savedRule);
+	}
+
+	/**
+	 * Append the checkpoint's changes to the log.
+	 */
+
+	private void writeDelta(Checkpoint cp) throws IOException {
+		int size = RECORD_HEADER + cp.count * ENTRY_SIZE + 4;
+		if (_record.capacity() < size) {
+			_record = ByteBuffer.allocate(Math.max(size, 2 * _record.capacity())).order(ByteOrder.LITTLE_ENDIAN);
+		}
+		ByteBuffer buf = _record;
+		buf.clear();
+		buf.putInt(MAGIC);
+		buf.putLong(cp.generation);
+		buf.putInt(cp.count);
+		for (int j = 0; j < cp.count; j++) {
+			buf.putInt(cp.rows[j]);
+			buf.putInt(cp.words[j]);
+			buf.putLong(cp.flips[j]);
+		}
+		CRC32 crc = new CRC32();
+		crc.update(buf.array(), 0, buf.position());
+		buf.putInt((int) crc.getValue());
+		buf.flip();
+
+		long position = _logBytes;
+		while (buf.hasRemaining()) {
+			position += _logChannel.write(buf, position);
+		}
+		_logChannel.force(false);
+		_logBytes = position;
+
+		long baseBytes = SnapshotFile.HEADER_SIZE + 8L * _saved.getRows() * _saved.getWordsPerRow();
+		if (_logBytes > baseBytes) {
+			_needBase = true;
+		}
+	}
+
+	class Writer implements Runnable {
+
+		public void run() {
+			try {
+				while (true) {
+					Checkpoint cp = _queue.take();
+					try {
+						if (cp.base) {
+							_needBase = false;
+							writeBase(cp);
+						} else {
+							writeDelta(cp);
+						}
+					} catch (IOException ioex) {
+						// Start again from a snapshot, since the log
+						// may now be missing changes.
+						_error = ioex;
+						_needBase = true;
+					}
+					idle();
+				}
+			} catch (InterruptedException iex) {
+				// Stopped
+			} finally {
+				try {
+					if (_logChannel != null) {
+						_logChannel.close();
+					}
+				} catch (IOException ioex) {
+					_error = ioex;
+				}
+			}
+		}
+	}
+
+	/**
+	 * A log file mapped a chunk at a time, since one mapping can cover at most
+	 * 2 GB.
+	 */
+
+	static class LogMap {
+
+		private final FileChannel _ch;
+
+		private final long _chunk;
+
+		private MappedByteBuffer _map;
+
+		private long _start;
+
+		LogMap(FileChannel ch, long chunk) {
+			_ch = ch;
+			_chunk = chunk;
+		}
+
+		/**
+		 * The length bytes of the log at position, little endian, mapping a new
+		 * chunk starting there if the current one does not hold them all.
+		 */
+
+		ByteBuffer get(long position, int length) throws IOException {
+			if (_map == null || position < _start || position + length > _start + _map.capacity()) {
+				long size = Math.min(_ch.size() - position, Math.max(length, _chunk));
+				_map = _ch.map(FileChannel.MapMode.READ_ONLY, position, size);
+				_start = position;
+			}
+			ByteBuffer buf = _map.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+			buf.position((int) (position - _start));
+			buf.limit(buf.position() + length);
+			return buf;
+		}
+	}
+
+	static class Checkpoint {
+
+		boolean base;
+
+		long generation;
+
+		int count;
+
+		int[] rows = new int[256];
+
+		int[] words = new int[256];
+
+		long[] flips = new long[256];
+
+		void add(int row, int word, long bits) {
+			if (count == rows.length) {
+				rows = Arrays.copyOf(rows, 2 * count);
+				words = Arrays.copyOf(words, 2 * count);
+				flips = Arrays.copyOf(flips, 2 * count);
+			}
+			rows[count] = row;
+			words[count] = word;
+			flips[count] = bits;
+			count++;
+		}
+	}
+
+}
@@ -0,0 +1,150 @@
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AutosaveTest {
+
+	@org.junit.Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	// Step a world the given number of generations, waiting after each
+	// step for any checkpoint to be written, so none is skipped.
+	private static void run(World w, Autosave save, int generations) throws Exception {
+		for (int g = 0; g < generations; g++) {
+			w.getLock().lock();
+			try {
+				w.step();
+			} finally {
+				w.getLock().unlock();
+			}
+			save.awaitIdle();
+		}
+	}
+
+	// Restoring gives back the world as last saved, from the snapshot plus
+	// the log of changes since.
+
+	@Test
+	public void testRestoreReplaysLog() throws Exception {
+		String name = new File(folder.getRoot(), "auto").getPath();
+		World w = TestWorlds.soup(100, 1);
+		Autosave save = new Autosave(name, 5, 0);
+		w.getLock().lock();
+		try {
+			save.start(w);
+		} finally {
+			w.getLock().unlock();
+		}
+		run(w, save, 23);
+		save.stop(w);
+		assertNull(save.getError());
+
+		assertTrue(Files.size(Paths.get(name + ".log")) > 0);
+		World back = Autosave.restore(name);
+		assertEquals(w.toString(), back.toString());
+		assertEquals(23, back.getGeneration());
+	}
+
+	// A log record cut short by a crash is ignored, and everything before
+	// it is still restored.
+
+	@Test
+	public void testRestoreIgnoresTornRecord() throws Exception {
+		String name = new File(folder.getRoot(), "auto").getPath();
+		World w = TestWorlds.soup(100, 2);
+		Autosave save = new Autosave(name, 5, 0);
+		w.getLock().lock();
+		try {
+			save.start(w);
+		} finally {
+			w.getLock().unlock();
+		}
+		run(w, save, 12);
+		save.stop(w);
+
+		byte[] junk = new byte[30];
+		new Random(3).nextBytes(junk);
+		Files.write(Paths.get(name + ".log"), junk, StandardOpenOption.APPEND);
+		World back = Autosave.restore(name);
+		assertEquals(w.toString(), back.toString());
+		assertEquals(12, back.getGeneration());
+	}
+
+	// Only the tiles steps changed are compared at a checkpoint, so edits
+	// made between steps, which are not reported tile by tile, must still
+	// reach the log, far from anything the steps touched.
+
+	@Test
+	public void testRestoreKeepsEdits() throws Exception {
+		String name = new File(folder.getRoot(), "auto").getPath();
+		World w = new World(300);
+		w.set(10, 10, true);
+		w.set(10, 11, true);
+		w.set(10, 12, true);
+		Autosave save = new Autosave(name, 3, 0);
+		w.getLock().lock();
+		try {
+			save.start(w);
+		} finally {
+			w.getLock().unlock();
+		}
+		run(w, save, 4);
+		w.getLock().lock();
+		try {
+			w.set(250, 250, true);
+			w.set(250, 251, true);
+			w.set(251, 250, true);
+			w.set(251, 251, true);
+		} finally {
+			w.getLock().unlock();
+		}
+		run(w, save, 5);
+		w.getLock().lock();
+		try {
+			w.set(200, 40, true);
+			w.undo();
+		} finally {
+			w.getLock().unlock();
+		}
+		run(w, save, 4);
+		save.stop(w);
+		assertNull(save.getError());
+
+		World back = Autosave.restore(name);
+		assertEquals(w.toString(), back.toString());
+		assertEquals(w.getGeneration(), back.getGeneration());
+		assertTrue(back.get(250, 250));
+	}
+
+	// A log mapped a few bytes at a time, so records and their entries
+	// straddle the chunks, restores the same as one mapped whole.
+
+	@Test
+	public void testRestoreInChunks() throws Exception {
+		String name = new File(folder.getRoot(), "auto").getPath();
+		World w = TestWorlds.soup(100, 4);
+		Autosave save = new Autosave(name, 2, 0);
+		w.getLock().lock();
+		try {
+			save.start(w);
+		} finally {
+			w.getLock().unlock();
+		}
+		run(w, save, 15);
+		save.stop(w);
+
+		for (long chunk : new long[] { 1, 20, 100, 1000 }) {
+			World back = Autosave.restore(name, false, chunk);
+			assertEquals(w.toString(), back.toString());
+			assertEquals(15, back.getGeneration());
+		}
+	}
+
+}
@@ -0,0 +1,390 @@
+import java.lang.management.*;
+import java.util.*;
+
+public class BatchRunner {
+
+	// Runs a world for a number of generations with no GUI
+	// at all, for servers without a display, and reports
+	// how fast it went.
+
+	// Empty cells put around an RLE pattern on every side
+	// when no size is given, so patterns which move or grow
+	// have room before they wrap round into themselves
+	static final int DEFAULT_RLE_MARGIN = 64;
+
+	// The biggest plane result written other than as RLE,
+	// which needs a world big enough to hold all of it
+	private static final int MAX_PLANE_WORLD = 1 << 15;
+
+	private String _inFile;
+
+	private String _outFile;
+
+	private long _generations;
+
+	private String _engineName;
+
+	private int _threads;
+
+	// Size of the world to run in, or -1 for the pattern's own
+	private int _size = -1;
+
+	// What to do when the world starts repeating: null to
+	// not look, "report" or "skip" the rest of the cycles
+	private String _onCycle;
+
+	private CycleDetector _cycles;
+
+	// Tiles computed, summed over every step run, and the
+	// number of steps, to show how much tracking skipped
+	private long _activeTiles;
+
+	private long _steps;
+
+	// Overrides the rule in the pattern file, if not null
+	private Rule _rule;
+
+	// Whether the world keeps its cells off the heap
+	private boolean _offHeap;
+
+	// Where to record every generation, if not null
+	private String _recordFile;
+
+	private long _keyframeInterval = Recorder.DEFAULT_KEYFRAME_INTERVAL;
+
+	public BatchRunner(String inFile, String outFile, long generations, String engineName, int threads) {
+		_inFile = inFile;
+		_outFile = outFile;
+		_generations = generations;
+		_engineName = engineName;
+		_threads = threads;
+	}
+
+	/**
+	 * Run in a size x size world rather than one sized by the pattern file. An
+	 * RLE pattern goes in the middle; a pattern in the Write format goes in the
+	 * top left corner.
+	 */
+
+	public void setSize(int size) {
+		_size = size;
+	}
+
+	/**
+	 * Look for the world repeating itself, and either just report it or also skip
+	 * straight to the end by stepping only the remainder of the last cycle.
+	 */
+
+	public void setOnCycle(String action) {
+		_onCycle = action;
+	}
+
+	/**
+	 * Step by the given rule, whatever rule the pattern file names.
+	 */
+
+	public void setRule(Rule rule) {
+		_rule = rule;
+	}
+
+	/**
+	 * Keep the world's cells outside the Java heap, for worlds bigger than it.
+	 */
+
+	public void setOffHeap(boolean offHeap) {
+		_offHeap = offHeap;
+	}
+
+	/**
+	 * Record every generation run to the given file, with a keyframe every
+	 * keyframeInterval generations, for Player.
+	 */
+
+	public void setRecord(String fileName, long keyframeInterval) {
+		_recordFile = fileName;
+		_keyframeInterval = keyframeInterval;
+	}
+
+	/**
+	 * Load the pattern, run it, write the result and print a report. Returns
+	 * false, after printing why, if anything went wrong.
+	 */
+
+	public boolean run() {
+		World world = load(_inFile);
+		if (world == null) {
+			System.out.println("Could not read " + _inFile);
+			return false;
+		}
+		if (world.getSize() == 0) {
+			System.out.println(_inFile + " is empty");
+			return false;
+		}
+		if (_rule != null) {
+			world.setRule(_rule);
+		}
+
+		// The live cells left on the plane, for the hashlife
+		// and sparse engines
+		long[] plane = null;
+		long population;
+		boolean onPlane = _engineName.equals("hashlife") || _engineName.equals("sparse");
+
+		long start = System.nanoTime();
+		if (onPlane) {
+			// These planes do not wrap, so this only
+			// matches the other engines while the
+			// pattern stays clear of the edges.
+			if (!world.getRule().keepsEmptySpace()) {
+				System.out.println("The " + _engineName + " engine cannot run " + world.getRule());
+				return false;
+			}
+			HashLife hashLife = null;
+			SparseLife sparseLife = null;
+			try {
+				if (_engineName.equals("hashlife")) {
+					hashLife = HashLife.fromWorld(world);
+					hashLife.step(_generations);
+					population = hashLife.population();
+				} else {
+					sparseLife = SparseLife.fromWorld(world);
+					sparseLife.step(_generations);
+					population = sparseLife.population();
+				}
+			} catch (IllegalStateException | IllegalArgumentException ex) {
+				// Too far to jump, or grown too big
+				System.out.println("The " + _engineName + " engine stopped: " + ex.getMessage());
+				return false;
+			}
+			if (_outFile != null) {
+				try {
+					plane = hashLife != null ? hashLife.cells() : sparseLife.cells();
+				} catch (IllegalStateException isex) {
+					// Spread too far to list
+					System.out.println("Could not write " + _outFile + ": " + isex.getMessage());
+					return false;
+				}
+			}
+		} else {
+			LifeEngine engine = Engines.create(_engineName, _threads);
+			if (engine == null) {
+				System.out.println("Unknown engine " + _engineName);
+				return false;
+			}
+			world.setEngine(engine);
+			world.addStepListener(new StepListener() {
+				public void stepped(World w) {
+					_activeTiles += w.getActiveTileCount();
+					_steps++;
+				}
+			});
+			Recorder recorder = null;
+			try {
+				if (_recordFile != null) {
+					recorder = new Recorder(_recordFile, _keyframeInterval);
+					recorder.start(world);
+				}
+				if (_onCycle == null) {
+					world.step(_generations);
+				} else {
+					stepWatchingCycles(world);
+				}
+				if (recorder != null) {
+					recorder.stop(world);
+				}
+			} catch (java.io.IOException ioex) {
+				System.out.println("Could not record to " + _recordFile + ": " + ioex.getMessage());
+				return false;
+			}
+			population = world.population();
+		}
+		long elapsed = System.nanoTime() - start;
+
+		if (_outFile != null && plane != null) {
+			if (!savePlane(_outFile, plane, world.getRule(), world.getGeneration() + _generations)) {
+				return false;
+			}
+		} else if (_outFile != null && !save(_outFile, world)) {
+			System.out.println("Could not write " + _outFile);
+			return false;
+		}
+
+		double seconds = Math.max(elapsed, 1) / 1e9;
+		double cells = (double) world.getSize() * world.getSize();
+		System.out.println("World:             " + world.getSize() + " x " + world.getSize());
+		if (onPlane) {
+			System.out.println("Engine:            " + _engineName + " (1 thread)");
+		} else {
+			System.out.println("Engine:            " + _engineName + " (" + _threads
+					+ (_threads == 1 ? " thread)" : " threads)"));
+		}
+		System.out.println("Rule:              " + world.getRule());
+		System.out.println("Generations:       " + _generations);
+		System.out.println("Population:        " + population);
+		System.out.printf("Time:              %.3f s%n", seconds);
+		System.out.printf("Generations/sec:   %.1f%n", _generations / seconds);
+		if (!onPlane) {
+			// The planes skip empty space and are not
+			// bounded by the world they started from, so
+			// there is no count of cells they updated
+			System.out.printf("Cell updates/sec:  %.4g%n", cells * _generations / seconds);
+		}
+		if (_steps != 0) {
+			double active = (double) _activeTiles / _steps;
+			System.out.printf("Active tiles:      %.1f of %d per generation (%.1f%%)%n", active,
+					world.getTileCount(), 100 * active / world.getTileCount());
+		}
+		System.out.printf("Peak heap:         %.1f MB%n", peakHeapBytes() / 1048576.0);
+		if (world.isOffHeap()) {
+			// Both generations, 8 bytes a word
+			double bytes = 2 * 8.0 * world.getSize() * world.getCells().getWordsPerRow();
+			System.out.printf("Off heap:          %.1f MB%n", bytes / 1048576.0);
+		}
+		if (_cycles != null && _cycles.getPeriod() != 0) {
+			System.out.println("Cycle:             period " + _cycles.getPeriod() + " from generation "
+					+ _cycles.getCycleStart());
+		} else if (_cycles != null) {
+			System.out.println("Cycle:             none found");
+		}
+		return true;
+	}
+
+	private void stepWatchingCycles(World world) {
+		_cycles = new CycleDetector(CycleDetector.DEFAULT_HISTORY);
+		_cycles.reset(world);
+		world.addStepListener(_cycles);
+		long end = world.getGeneration() + _generations;
+		while (world.getGeneration() < end) {
+			world.step();
+			if (_cycles.getPeriod() != 0 && _onCycle.equals("skip") && world.getGeneration() < end) {
+				// Whole cycles change nothing, so only
+				// the part of one left over needs running.
+				// Jumping before it rather than after means
+				// a recording follows the jump, with a
+				// keyframe, and ends at the last generation.
+				long left = (end - world.getGeneration() - 1) % _cycles.getPeriod() + 1;
+				world.setGeneration(end - left);
+				world.step(left);
+			}
+		}
+		world.removeStepListener(_cycles);
+	}
+
+	/**
+	 * Load a world from an RLE file, a snapshot, or one in the format written by
+	 * the Write button. Returns null on failure.
+	 */
+
+	private World load(String fileName) {
+		if (fileName.endsWith(".snap")) {
+			// Read straight into place, as snapshots are
+			// how worlds too big for the heap are kept.
+			World world = FileAccess.loadSnapshot(fileName, _offHeap);
+			if (world != null && _size != -1 && world.getSize() != _size) {
+				System.out.println(fileName + " holds a " + world.getSize() + " x " + world.getSize() + " world");
+				return null;
+			}
+			return world;
+		}
+		World world;
+		if (fileName.endsWith(".rle")) {
+			if (_size == -1) {
+				world = FileAccess.loadRle(fileName, 0, DEFAULT_RLE_MARGIN);
+			} else {
+				world = FileAccess.loadRle(fileName, _size, 0);
+			}
+		} else {
+			ArrayList<String> lines = FileAccess.loadFile(fileName);
+			if (lines == null) {
+				world = null;
+			} else if (_size == -1) {
+				world = new World(lines);
+			} else {
+				world = new World(_size);
+				world.load(lines);
+			}
+		}
+		if (world == null || !_offHeap) {
+			return world;
+		}
+		World offHeap = new World(world.getSize(), true);
+		offHeap.setRule(world.getRule());
+		offHeap.copyFrom(world);
+		return offHeap;
+	}
+
+	/**
+	 * Save the smallest box holding the live cells left on a plane. An RLE file
+	 * is written straight from the cells; any other format goes through a world
+	 * just big enough for them. Returns whether it worked, after printing why
+	 * not.
+	 */
+
+	private static boolean savePlane(String fileName, long[] cells, Rule rule, long generation) {
+		if (fileName.endsWith(".rle")) {
+			if (!FileAccess.saveRle(fileName, cells, rule)) {
+				System.out.println("Could not write " + fileName);
+				return false;
+			}
+			return true;
+		}
+
+		long top = Long.MAX_VALUE;
+		long left = Long.MAX_VALUE;
+		long bottom = Long.MIN_VALUE;
+		long right = Long.MIN_VALUE;
+		for (int j = 0; j < cells.length; j++) {
+			top = Math.min(top, SparseLife.row(cells[j]));
+			bottom = Math.max(bottom, SparseLife.row(cells[j]));
+			left = Math.min(left, SparseLife.col(cells[j]));
+			right = Math.max(right, SparseLife.col(cells[j]));
+		}
+		long size = cells.length == 0 ? 1 : Math.max(bottom - top, right - left) + 1;
+		if (size > MAX_PLANE_WORLD) {
+			System.out.println("The result is " + (right - left + 1) + " x " + (bottom - top + 1)
+					+ "; write it to an .rle file instead");
+			return false;
+		}
+		World result = new World((int) size);
+		result.setRule(rule);
+		for (int j = 0; j < cells.length; j++) {
+			result.set((int) (SparseLife.row(cells[j]) - top), (int) (SparseLife.col(cells[j]) - left), true);
+		}
+		result.setGeneration(generation);
+		if (!save(fileName, result)) {
+			System.out.println("Could not write " + fileName);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Save a world in the format its file name ends with. Returns whether it
+	 * worked.
+	 */
+
+	static boolean save(String fileName, World world) {
+		if (fileName.endsWith(".rle")) {
+			return FileAccess.saveRle(fileName, world);
+		}
+		if (fileName.endsWith(".snap")) {
+			return FileAccess.saveSnapshot(fileName, world);
+		}
+		return FileAccess.saveFile(fileName, world);
+	}
+
+	/**
+	 * Highest heap use seen so far, summed over the heap memory pools.
+	 */
+
+	private static long peakHeapBytes() {
+		long peak = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				peak += pool.getPeakUsage().getUsed();
+			}
+		}
+		return peak;
+	}
+
+}
@@ -0,0 +1,161 @@
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BatchRunnerTest {
+
+	@org.junit.Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static final String GLIDER = "x = 3, y = 3, rule = B3/S23\nbob$2bo$3o!\n";
+
+	private String path(String name) {
+		return new File(folder.getRoot(), name).getPath();
+	}
+
+	private String write(String name, String contents) throws Exception {
+		String p = path(name);
+		PrintWriter out = new PrintWriter(p);
+		out.print(contents);
+		out.close();
+		return p;
+	}
+
+	// Run a batch, returning its report, with a last line saying whether
+	// it worked.
+
+	private static String run(BatchRunner batch) {
+		PrintStream stdout = System.out;
+		ByteArrayOutputStream report = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(report, true));
+		boolean ok;
+		try {
+			ok = batch.run();
+		} finally {
+			System.setOut(stdout);
+		}
+		return report.toString() + (ok ? "OK" : "FAILED");
+	}
+
+	// A glider in an RLE file gets the default margin, runs on a grid
+	// engine, is written out, and the report counts cells and tiles.
+
+	@Test
+	public void testGridRun() throws Exception {
+		String in = write("glider.rle", GLIDER);
+		String out = path("out.txt");
+		String report = run(new BatchRunner(in, out, 40, "swar", 2));
+		assertTrue(report, report.endsWith("OK"));
+		int size = 3 + 2 * BatchRunner.DEFAULT_RLE_MARGIN;
+		assertTrue(report, report.contains("World:             " + size + " x " + size));
+		assertTrue(report, report.contains("Engine:            swar (2 threads)"));
+		assertTrue(report, report.contains("Generations:       40"));
+		assertTrue(report, report.contains("Population:        5"));
+		assertTrue(report, report.contains("Cell updates/sec:"));
+		assertTrue(report, report.contains("Active tiles:"));
+
+		World w = new World(FileAccess.loadFile(out));
+		assertEquals(size, w.getSize());
+		assertEquals(5, w.population());
+		// Ten cells down and to the right of where it started
+		assertTrue(w.get(BatchRunner.DEFAULT_RLE_MARGIN + 10, BatchRunner.DEFAULT_RLE_MARGIN + 11));
+	}
+
+	// A size puts the pattern in the middle of a world that big.
+
+	@Test
+	public void testSize() throws Exception {
+		String in = write("glider.rle", GLIDER);
+		String out = path("out.rle");
+		BatchRunner batch = new BatchRunner(in, out, 4, "scalar", 1);
+		batch.setSize(21);
+		String report = run(batch);
+		assertTrue(report, report.endsWith("OK"));
+		assertTrue(report, report.contains("World:             21 x 21"));
+		World w = new World(21);
+		assertTrue(FileAccess.loadRle(out, w));
+		assertEquals(5, w.population());
+		assertTrue(w.get(10, 11));
+	}
+
+	// The planes report the whole plane, on one thread, with no count of
+	// cell updates, and write the same result as each other.
+
+	@Test
+	public void testPlaneRuns() throws Exception {
+		String in = write("glider.rle", GLIDER);
+		String[] outs = new String[2];
+		String[] engines = { "hashlife", "sparse" };
+		for (int j = 0; j < 2; j++) {
+			outs[j] = path(engines[j] + ".rle");
+			String report = run(new BatchRunner(in, outs[j], 4000, engines[j], 1));
+			assertTrue(report, report.endsWith("OK"));
+			assertTrue(report, report.contains("Engine:            " + engines[j] + " (1 thread)"));
+			assertTrue(report, report.contains("Population:        5"));
+			assertFalse(report, report.contains("Cell updates/sec:"));
+		}
+		World hash = FileAccess.loadRle(outs[0], 0, 0);
+		World sparse = FileAccess.loadRle(outs[1], 0, 0);
+		assertEquals(3, hash.getSize());
+		assertEquals(sparse.toString(), hash.toString());
+	}
+
+	// Skipping cycles gets to the same place as running every generation.
+
+	@Test
+	public void testSkipCycles() throws Exception {
+		String in = write("blinker.rle", "x = 3, y = 1\n3o!\n");
+		String out = path("out.txt");
+		BatchRunner batch = new BatchRunner(in, out, 1000001, "swar", 1);
+		batch.setOnCycle("skip");
+		String report = run(batch);
+		assertTrue(report, report.endsWith("OK"));
+		assertTrue(report, report.contains("Cycle:             period 2 from generation 0"));
+		World w = new World(FileAccess.loadFile(out));
+		// An odd number of generations leaves it upright, in the
+		// middle of a world as wide as it is plus the margins
+		int m = BatchRunner.DEFAULT_RLE_MARGIN;
+		assertEquals(3, w.population());
+		assertTrue(w.get(m, m + 1));
+		assertTrue(w.get(m + 1, m + 1));
+		assertTrue(w.get(m + 2, m + 1));
+	}
+
+	// A plane engine which cannot go on says so, rather than blaming the
+	// file it would have written; one which can but spreads too far to
+	// write out blames the file.
+
+	@Test
+	public void testPlaneFailures() throws Exception {
+		String in = write("glider.rle", GLIDER);
+		String report = run(new BatchRunner(in, null, Long.MAX_VALUE, "hashlife", 1));
+		assertTrue(report, report.endsWith("FAILED"));
+		assertTrue(report, report.contains("The hashlife engine stopped: Cannot jump"));
+
+		String out = path("far.rle");
+		report = run(new BatchRunner(in, out, 1L << 40, "hashlife", 1));
+		assertTrue(report, report.endsWith("FAILED"));
+		assertTrue(report, report.contains("Could not write " + out + ": Live cell too far out"));
+	}
+
+	// Missing files and unknown engines are reported, not thrown.
+
+	@Test
+	public void testFailures() throws Exception {
+		String report = run(new BatchRunner(path("missing.rle"), null, 1, "swar", 1));
+		assertTrue(report, report.endsWith("FAILED"));
+		assertTrue(report, report.contains("Could not read"));
+
+		String in = write("glider.rle", GLIDER);
+		report = run(new BatchRunner(in, null, 1, "warp", 1));
+		assertTrue(report, report.endsWith("FAILED"));
+		assertTrue(report, report.contains("Unknown engine warp"));
+	}
+
+}
@@ -0,0 +1,192 @@
+import java.nio.*;
+import java.util.*;
+
+public class BitGrid {
+
+	// Cell (row, col) lives in bit (col % 64) of word
+	// (row * _wordsPerRow + col / 64). Bits past the last
+	// column of a row are always kept clear, so whole
+	// words can be compared and counted directly.
+	//
+	// The words are normally a long[] on the heap.
+	// OffHeapBitGrid keeps them elsewhere, overriding every
+	// method which touches _words.
+
+	private final int _rows;
+
+	private final int _cols;
+
+	private final int _wordsPerRow;
+
+	private final long _lastWordMask;
+
+	private final long[] _words;
+
+	public BitGrid(int rows, int cols) {
+		this(rows, cols, true);
+	}
+
+	/**
+	 * Set up the shape of the grid, without an array for the words unless
+	 * onHeap is true.
+	 */
+
+	protected BitGrid(int rows, int cols, boolean onHeap) {
+		_rows = rows;
+		_cols = cols;
+		_wordsPerRow = (cols + 63) >>> 6;
+		_lastWordMask = (cols & 63) == 0 ? -1L : (1L << (cols & 63)) - 1;
+		_words = onHeap ? new long[rows * _wordsPerRow] : null;
+	}
+
+	/**
+	 * An empty grid of the same shape, stored the same way.
+	 */
+
+	public BitGrid blank() {
+		return new BitGrid(_rows, _cols);
+	}
+
+	public int getRows() {
+		return _rows;
+	}
+
+	public int getCols() {
+		return _cols;
+	}
+
+	public int getWordsPerRow() {
+		return _wordsPerRow;
+	}
+
+	/**
+	 * Mask of the bits in the last word of a row which are real cells.
+	 */
+
+	public long getLastWordMask() {
+		return _lastWordMask;
+	}
+
+	public boolean get(int row, int col) {
+		return (_words[row * _wordsPerRow + (col >>> 6)] & (1L << col)) != 0;
+	}
+
+	public void set(int row, int col, boolean alive) {
+		int i = row * _wordsPerRow + (col >>> 6);
+		if (alive) {
+			_words[i] |= 1L << col;
+		} else {
+			_words[i] &= ~(1L << col);
+		}
+	}
+
+	/**
+	 * Make cells fromCol (inclusive) to toCol (exclusive) of a row alive.
+	 */
+
+	public void fill(int row, int fromCol, int toCol) {
+		int base = row * _wordsPerRow;
+		while (fromCol < toCol) {
+			int w = fromCol >>> 6;
+			int end = Math.min(toCol, (w + 1) << 6);
+			int n = end - fromCol;
+			long mask = n == 64 ? -1L : ((1L << n) - 1) << fromCol;
+			_words[base + w] |= mask;
+			fromCol = end;
+		}
+	}
+
+	/**
+	 * The words themselves, row after row, for engines which work on many at
+	 * once, or null if they are not on the heap. Writing to it is the same as
+	 * calling setWord().
+	 */
+
+	long[] words() {
+		return _words;
+	}
+
+	public long getWord(int row, int word) {
+		return _words[row * _wordsPerRow + word];
+	}
+
+	public void setWord(int row, int word, long bits) {
+		_words[row * _wordsPerRow + word] = bits;
+	}
+
+	/**
+	 * Put the words of a row into a buffer, in one bulk copy.
+	 */
+
+	public void writeRow(int row, LongBuffer out) {
+		out.put(_words, row * _wordsPerRow, _wordsPerRow);
+	}
+
+	/**
+	 * Fill a row from the words in a buffer, in one bulk copy. Bits past the
+	 * last column are cleared.
+	 */
+
+	public void readRow(int row, LongBuffer in) {
+		int base = row * _wordsPerRow;
+		in.get(_words, base, _wordsPerRow);
+		_words[base + _wordsPerRow - 1] &= _lastWordMask;
+	}
+
+	/**
+	 * Kill every cell in the grid.
+	 */
+
+	public void clear() {
+		Arrays.fill(_words, 0L);
+	}
+
+	/**
+	 * Overwrite this grid with the contents of another grid of the same shape.
+	 */
+
+	public void copyFrom(BitGrid other) {
+		if (other._rows != _rows || other._cols != _cols) {
+			throw new IllegalArgumentException("Grid shapes differ");
+		}
+		long[] words = other.words();
+		if (words != null) {
+			System.arraycopy(words, 0, _words, 0, _words.length);
+			return;
+		}
+		for (int row = 0; row < _rows; row++) {
+			for (int word = 0; word < _wordsPerRow; word++) {
+				_words[row * _wordsPerRow + word] = other.getWord(row, word);
+			}
+		}
+	}
+
+	/**
+	 * Count the live cells in the grid.
+	 */
+
+	public long population() {
+		long count = 0;
+		for (int j = 0; j < _words.length; j++) {
+			count += Long.bitCount(_words[j]);
+		}
+		return count;
+	}
+
+	/**
+	 * One line per row, with an "X" for each live cell and a "." for each dead
+	 * one.
+	 */
+
+	public String toString() {
+		StringBuilder sb = new StringBuilder(_rows * (_cols + 1));
+		for (int j = 0; j < _rows; j++) {
+			for (int k = 0; k < _cols; k++) {
+				sb.append(get(j, k) ? 'X' : '.');
+			}
+			sb.append('\n');
+		}
+		return sb.toString();
+	}
+
+}
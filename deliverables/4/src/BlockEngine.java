@@ -0,0 +1,121 @@
+public class BlockEngine implements LifeEngine {
+
+	// Computes the grid two rows and two columns at a time.
+	// The next state of a 2x2 block depends only on the 4x4
+	// block around it, so a table of all 65536 such blocks
+	// gives the answer with one lookup per four cells,
+	// whatever the rule. The table is built from the rule
+	// the first time it is used.
+	//
+	// Index bit (4 * row + col) is cell (row, col) of the
+	// 4x4 block, and entry bit (2 * row + col) is the next
+	// state of cell (row + 1, col + 1).
+	//
+	// Blocks start at even columns of each word, so a block
+	// never needs more than one cell of the next word. A
+	// last word which is not full wraps around part way
+	// through, so it is left to SwarEngine.
+
+	private final SwarEngine _edges = new SwarEngine();
+
+	private volatile Table _table;
+
+	static final class Table {
+
+		final Rule rule;
+
+		final byte[] next = new byte[1 << 16];
+
+		Table(Rule rule) {
+			this.rule = rule;
+			for (int block = 0; block < next.length; block++) {
+				int bits = 0;
+				for (int row = 0; row < 2; row++) {
+					for (int col = 0; col < 2; col++) {
+						// The 3x3 around cell (row + 1, col + 1)
+						int around = 0x777 << (4 * row + col);
+						int centre = 1 << (4 * (row + 1) + col + 1);
+						int count = Integer.bitCount(block & around & ~centre);
+						if (rule.next((block & centre) != 0, count)) {
+							bits |= 1 << (2 * row + col);
+						}
+					}
+				}
+				next[block] = (byte) bits;
+			}
+		}
+	}
+
+	/**
+	 * The table for the given rule, building it if the rule has changed. Any
+	 * number of threads may call this; at worst they each build the same table.
+	 */
+
+	private byte[] table(Rule rule) {
+		Table t = _table;
+		if (t == null || !t.rule.equals(rule)) {
+			t = new Table(rule);
+			_table = t;
+		}
+		return t.next;
+	}
+
+	public boolean step(Rule rule, BitGrid src, BitGrid dst, int fromRow, int toRow, int fromWord, int toWord) {
+		byte[] next = table(rule);
+		int rows = src.getRows();
+		int fullWords = src.getLastWordMask() == -1L ? src.getWordsPerRow() : src.getWordsPerRow() - 1;
+		int blockToWord = Math.min(toWord, fullWords);
+
+		boolean changed = false;
+		if (blockToWord < toWord) {
+			changed = _edges.step(rule, src, dst, fromRow, toRow, Math.max(fromWord, fullWords), toWord);
+		}
+
+		long diff = 0;
+		for (int j = fromRow; j < toRow; j += 2) {
+			int up = j == 0 ? rows - 1 : j - 1;
+			int down = j == rows - 1 ? 0 : j + 1;
+			int down2 = down == rows - 1 ? 0 : down + 1;
+			// The second row may belong to another
+			// region, or wrap around to the first.
+			boolean both = j + 1 < toRow;
+
+			for (int w = fromWord; w < blockToWord; w++) {
+				// Bit i of each is column i - 1
+				long a = SwarEngine.west(src, up, w);
+				long b = SwarEngine.west(src, j, w);
+				long c = SwarEngine.west(src, down, w);
+				long d = SwarEngine.west(src, down2, w);
+
+				long top = 0;
+				long bottom = 0;
+				for (int k = 0; k < 62; k += 2) {
+					int block = (int) (a >>> k & 15) | (int) (b >>> k & 15) << 4 | (int) (c >>> k & 15) << 8
+							| (int) (d >>> k & 15) << 12;
+					int v = next[block];
+					top |= (long) (v & 3) << k;
+					bottom |= (long) (v >>> 2 & 3) << k;
+				}
+
+				// The last block reaches into the next
+				// word, which east() shifts in as bit 63.
+				int block = (int) (a >>> 62) | (int) (SwarEngine.east(src, up, w) >>> 62) << 2
+						| (int) (b >>> 62) << 4 | (int) (SwarEngine.east(src, j, w) >>> 62) << 6
+						| (int) (c >>> 62) << 8 | (int) (SwarEngine.east(src, down, w) >>> 62) << 10
+						| (int) (d >>> 62) << 12 | (int) (SwarEngine.east(src, down2, w) >>> 62) << 14;
+				int v = next[block];
+				top |= (long) (v & 3) << 62;
+				bottom |= (long) (v >>> 2 & 3) << 62;
+
+				diff |= top ^ src.getWord(j, w);
+				dst.setWord(j, w, top);
+				if (both) {
+					diff |= bottom ^ src.getWord(down, w);
+					dst.setWord(down, w, bottom);
+				}
+			}
+		}
+		return changed || diff != 0;
+	}
+
+}
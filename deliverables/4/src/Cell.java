@@ -6,7 +6,13 @@ public class Cell extends JButton {
 
 	private boolean _beenAlive = false;
 
-	private int _maxSize = 10000;
+	// The model this button is a view of, if any. Clicking
+	// the button writes the new state through to it.
+	private World _world;
+
+	private int _row;
+
+	private int _col;
 
 	public Cell() {
 		super(" ");
@@ -21,6 +27,13 @@ public class Cell extends JButton {
 		setAlive(alive);
 	}
 
+	public Cell(World world, int row, int col) {
+		this();
+		_world = world;
+		_row = row;
+		_col = col;
+	}
+
 	public void resetBeenAlive() {
 		_beenAlive = false;
 	}
@@ -36,17 +49,7 @@ public class Cell extends JButton {
 	}
 
 	public String toString() {
-		String toReturn = new String("");
-		String currentState = getText();
-		for (int j = 0; j < _maxSize; j++) {
-			toReturn += currentState;
-		}
-		if (toReturn.substring(0, 1).equals("X")) {
-			return toReturn.substring(0, 1);
-		} else {
-			return ".";
-		}
-
+		return getAlive() ? "X" : ".";
 	}
 
 	public void setAlive(boolean a) {
@@ -85,6 +88,14 @@ public class Cell extends JButton {
 				// This shouldn't happen
 				setAlive(false);
 			}
+			if (_world != null) {
+				_world.getLock().lock();
+				try {
+					_world.set(_row, _col, getAlive());
+				} finally {
+					_world.getLock().unlock();
+				}
+			}
 		}
 
 	}
@@ -0,0 +1,10 @@
+public interface ChangeVisitor {
+
+	/**
+	 * Called for each word of the grid which changed, with a mask of the cells in
+	 * it which flipped.
+	 */
+
+	void changed(int row, int word, long flips);
+
+}
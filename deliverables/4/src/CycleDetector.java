@@ -0,0 +1,265 @@
+import java.util.*;
+
+public class CycleDetector implements StepListener, ChangeVisitor {
+
+	// Spots when a world starts repeating itself, by
+	// keeping a 64-bit hash of the whole grid and the
+	// hashes of the last few generations.
+	//
+	// The hash is Zobrist-style: the XOR of a random-looking
+	// value for each word of the grid, mixed from the
+	// word's position and contents. A step only changes the
+	// words it flipped cells in, so the hash is updated from
+	// forEachChange() rather than recomputed. Two different
+	// grids share a hash with probability about 2^-64.
+	//
+	// Edits, loads and undos make it start again from a
+	// full hash, since the history no longer follows on.
+	//
+	// The hashes kept are indexed by an open-addressing
+	// table, so looking one up costs the same however long
+	// the history is.
+
+	public static final int DEFAULT_HISTORY = 1024;
+
+	private final long[] _hashes;
+
+	private final long[] _generations;
+
+	// Number of entries of _hashes in use, and where the
+	// next one goes
+	private int _count;
+
+	private int _next;
+
+	// Index in _hashes + 1 of each hash kept, by linear
+	// probing from the top bits of the hash, or 0 if empty
+	private final int[] _index;
+
+	private final int _shift;
+
+	private long _hash;
+
+	private BitGrid _cells;
+
+	private int _wordsPerRow;
+
+	// The world's edit count when the hash was last right,
+	// or -1 to start again
+	private long _editCount = -1;
+
+	private long _period = 0;
+
+	private long _cycleStart = -1;
+
+	private Runnable _onCycle;
+
+	/**
+	 * Detect cycles with periods of up to history generations.
+	 */
+
+	public CycleDetector(int history) {
+		_hashes = new long[history];
+		_generations = new long[history];
+		int capacity = 16;
+		while (capacity < 2L * history) {
+			capacity <<= 1;
+		}
+		_index = new int[capacity];
+		_shift = 64 - Integer.numberOfTrailingZeros(capacity);
+	}
+
+	/**
+	 * Run r, on the thread stepping the world, when a cycle is first found.
+	 */
+
+	public void setOnCycle(Runnable r) {
+		_onCycle = r;
+	}
+
+	/**
+	 * The period of the cycle the world is in, or 0 if none has been found.
+	 */
+
+	public long getPeriod() {
+		return _period;
+	}
+
+	/**
+	 * The first generation seen to be part of the cycle, or -1 if none has been
+	 * found. The cycle may have started earlier than the history goes back.
+	 */
+
+	public long getCycleStart() {
+		return _cycleStart;
+	}
+
+	public long getHash() {
+		return _hash;
+	}
+
+	/**
+	 * Forget everything and start again from the world as it is now.
+	 */
+
+	public void reset(World world) {
+		_cells = world.getCells();
+		_wordsPerRow = _cells.getWordsPerRow();
+		_hash = 0;
+		for (int row = 0; row < _cells.getRows(); row++) {
+			for (int word = 0; word < _wordsPerRow; word++) {
+				_hash ^= wordHash(row * _wordsPerRow + word, _cells.getWord(row, word));
+			}
+		}
+		_count = 0;
+		_next = 0;
+		Arrays.fill(_index, 0);
+		_period = 0;
+		_cycleStart = -1;
+		_editCount = world.getEditCount();
+		remember(world.getGeneration());
+	}
+
+	public void stepped(World world) {
+		if (world.getEditCount() != _editCount) {
+			reset(world);
+			return;
+		}
+		_cells = world.getCells();
+		world.forEachChange(this);
+		long generation = world.getGeneration();
+
+		if (_period != 0) {
+			remember(generation);
+			return;
+		}
+		int j = lookup(_hash);
+		long match = j >= 0 ? _generations[j] : -1;
+		remember(generation);
+		if (match >= 0) {
+			_period = generation - match;
+			_cycleStart = findStart(match);
+			if (_onCycle != null) {
+				_onCycle.run();
+			}
+		}
+	}
+
+	public void changed(int row, int word, long flips) {
+		int i = row * _wordsPerRow + word;
+		long bits = _cells.getWord(row, word);
+		_hash ^= wordHash(i, bits) ^ wordHash(i, bits ^ flips);
+	}
+
+	private void remember(long generation) {
+		if (_count == _hashes.length) {
+			unindex(_next);
+		}
+		_hashes[_next] = _hash;
+		_generations[_next] = generation;
+		int mask = _index.length - 1;
+		int i = slot(_hash);
+		while (_index[i] != 0) {
+			i = (i + 1) & mask;
+		}
+		_index[i] = _next + 1;
+		_next = (_next + 1) % _hashes.length;
+		_count = Math.min(_count + 1, _hashes.length);
+	}
+
+	private int slot(long hash) {
+		return (int) (hash >>> _shift);
+	}
+
+	/**
+	 * The index in _hashes of a kept hash equal to the given one, or -1.
+	 */
+
+	private int lookup(long hash) {
+		int mask = _index.length - 1;
+		for (int i = slot(hash); _index[i] != 0; i = (i + 1) & mask) {
+			if (_hashes[_index[i] - 1] == hash) {
+				return _index[i] - 1;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Take entry j of _hashes out of the index, before it is overwritten.
+	 */
+
+	private void unindex(int j) {
+		int mask = _index.length - 1;
+		int i = slot(_hashes[j]);
+		while (_index[i] != j + 1) {
+			i = (i + 1) & mask;
+		}
+
+		// Move later entries of the same run back into
+		// the gap, as LongHashSet does.
+		int gap = i;
+		for (int k = (i + 1) & mask; _index[k] != 0; k = (k + 1) & mask) {
+			int home = slot(_hashes[_index[k] - 1]);
+			if (((k - home) & mask) >= ((k - gap) & mask)) {
+				_index[gap] = _index[k];
+				gap = k;
+			}
+		}
+		_index[gap] = 0;
+	}
+
+	/**
+	 * The earliest generation in the history from which the states repeat every
+	 * _period generations, given that the one at generation from does.
+	 */
+
+	private long findStart(long from) {
+		long start = from;
+		while (true) {
+			int a = find(start - 1);
+			int b = find(start - 1 + _period);
+			if (a < 0 || b < 0 || _hashes[a] != _hashes[b]) {
+				return start;
+			}
+			start--;
+		}
+	}
+
+	/**
+	 * The index of the given generation in the history, or -1.
+	 */
+
+	private int find(long generation) {
+		long newest = _generations[(_next - 1 + _hashes.length) % _hashes.length];
+		long back = newest - generation;
+		if (back < 0 || back >= _count) {
+			return -1;
+		}
+		int j = (int) ((_next - 1 - back + _hashes.length) % _hashes.length);
+		return _generations[j] == generation ? j : -1;
+	}
+
+	/**
+	 * The contribution of word i holding bits to the hash. Empty words contribute
+	 * nothing.
+	 */
+
+	private static long wordHash(long i, long bits) {
+		if (bits == 0) {
+			return 0;
+		}
+		return mix(bits ^ mix(i + 0x9e3779b97f4a7c15L));
+	}
+
+	/**
+	 * The SplitMix64 finalizer.
+	 */
+
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+}
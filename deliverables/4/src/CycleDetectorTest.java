@@ -0,0 +1,86 @@
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class CycleDetectorTest {
+
+	// Step a world watched by a fresh detector until it finds a cycle or
+	// the given number of generations have gone by.
+	private static CycleDetector watch(World w, int generations) {
+		CycleDetector cycles = new CycleDetector(CycleDetector.DEFAULT_HISTORY);
+		cycles.reset(w);
+		w.addStepListener(cycles);
+		for (int g = 0; g < generations && cycles.getPeriod() == 0; g++) {
+			w.step();
+		}
+		return cycles;
+	}
+
+	private static void glider(World w, int row, int col) {
+		w.set(row, col + 1, true);
+		w.set(row + 1, col + 2, true);
+		w.set(row + 2, col, true);
+		w.set(row + 2, col + 1, true);
+		w.set(row + 2, col + 2, true);
+	}
+
+	// A block repeats every generation, from the start.
+
+	@Test
+	public void testStillLife() {
+		World w = new World(32);
+		w.set(10, 10, true);
+		w.set(10, 11, true);
+		w.set(11, 10, true);
+		w.set(11, 11, true);
+		CycleDetector cycles = watch(w, 10);
+		assertEquals(1, cycles.getPeriod());
+		assertEquals(0, cycles.getCycleStart());
+	}
+
+	// A blinker repeats every two generations.
+
+	@Test
+	public void testOscillator() {
+		World w = new World(32);
+		w.set(10, 10, true);
+		w.set(10, 11, true);
+		w.set(10, 12, true);
+		CycleDetector cycles = watch(w, 10);
+		assertEquals(2, cycles.getPeriod());
+		assertEquals(0, cycles.getCycleStart());
+	}
+
+	// A glider on a 64 x 64 torus is back where it started after moving
+	// 64 cells diagonally, four generations a cell.
+
+	@Test
+	public void testGliderOnTorus() {
+		World w = new World(64);
+		glider(w, 5, 5);
+		CycleDetector cycles = watch(w, 1000);
+		assertEquals(256, cycles.getPeriod());
+	}
+
+	// Nothing is found while the world is still changing, and after an
+	// edit the detector starts again and finds the new cycle.
+
+	@Test
+	public void testEditStartsAgain() {
+		World w = new World(64);
+		glider(w, 5, 5);
+		CycleDetector cycles = watch(w, 100);
+		assertEquals(0, cycles.getPeriod());
+
+		w.clear();
+		w.set(10, 10, true);
+		w.set(10, 11, true);
+		w.set(10, 12, true);
+		w.step();
+		assertEquals(0, cycles.getPeriod());
+		w.step();
+		w.step();
+		assertEquals(2, cycles.getPeriod());
+	}
+
+}
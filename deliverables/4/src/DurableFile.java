@@ -0,0 +1,159 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.zip.*;
+
+public class DurableFile {
+
+	// Helpers for saving a file so that a crash at any
+	// point leaves either the old file or the whole new
+	// one, never a mix. The new file is written to a
+	// temporary file next to the target, ended with a
+	// checksum footer, forced to disk and then renamed over
+	// the target in one step, and the rename is forced to
+	// disk too.
+	//
+	// The footer is one fixed-width line at the very end,
+	//
+	//     #crc32 <crc, 8 hex digits> <length, 16 hex digits>
+	//
+	// giving the CRC-32 and length of everything before it,
+	// so a reader can find it by seeking, and tell a torn
+	// or truncated file from a good one.
+
+	private static final String FOOTER_TAG = "#crc32 ";
+
+	public static final int FOOTER_SIZE = FOOTER_TAG.length() + 8 + 1 + 16 + 1;
+
+	// Most bytes mapped at once while checking
+	private static final long MAX_CHUNK = 1L << 30;
+
+	/**
+	 * Create a new, empty temporary file to write before replacing target, in the
+	 * same directory so the rename cannot cross file systems. Its name starts
+	 * with tempName and is made unique, so saves running at the same time never
+	 * write over each other's temporary files.
+	 */
+
+	public static Path tempFor(Path target, String tempName) throws IOException {
+		Path dir = target.toAbsolutePath().getParent();
+		return Files.createTempFile(dir, Paths.get(tempName).getFileName().toString() + ".", ".tmp");
+	}
+
+	/**
+	 * Delete a temporary file left by a save which failed, if it is still there.
+	 * Errors are ignored, since the save has failed already.
+	 */
+
+	public static void discard(Path temp) {
+		try {
+			Files.deleteIfExists(temp);
+		} catch (IOException ioex) {
+			// Nothing more to do
+		}
+	}
+
+	/**
+	 * Write the footer for the first length bytes of the channel, whose CRC-32 is
+	 * crc, right after them, then force the file to disk.
+	 */
+
+	public static void finish(FileChannel ch, long length, long crc) throws IOException {
+		String footer = String.format("%s%08x %016x\n", FOOTER_TAG, crc, length);
+		ByteBuffer buf = ByteBuffer.wrap(footer.getBytes(StandardCharsets.US_ASCII));
+		long position = length;
+		while (buf.hasRemaining()) {
+			position += ch.write(buf, position);
+		}
+		ch.truncate(position);
+		ch.force(true);
+	}
+
+	private static final boolean WINDOWS = System.getProperty("os.name", "").startsWith("Windows");
+
+	/**
+	 * Rename temp over target, atomically if the file system can, and force the
+	 * rename to disk.
+	 */
+
+	public static void replace(Path temp, Path target) throws IOException {
+		try {
+			Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException amnsex) {
+			Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+		forceDirectory(target.toAbsolutePath().getParent());
+	}
+
+	/**
+	 * Force a directory's entries to disk, so a rename in it survives a crash.
+	 * Windows cannot open a directory this way, and does not need to.
+	 */
+
+	private static void forceDirectory(Path dir) throws IOException {
+		if (WINDOWS || dir == null) {
+			return;
+		}
+		FileChannel ch = FileChannel.open(dir, StandardOpenOption.READ);
+		try {
+			ch.force(true);
+		} finally {
+			ch.close();
+		}
+	}
+
+	/**
+	 * The length of the data before the footer. A file with no footer is taken as
+	 * it is, so files saved without one still load. Throws an IOException if the
+	 * footer does not match the data.
+	 */
+
+	public static long checkedLength(FileChannel ch) throws IOException {
+		long size = ch.size();
+		if (size < FOOTER_SIZE) {
+			return size;
+		}
+		ByteBuffer buf = ByteBuffer.allocate(FOOTER_SIZE);
+		while (buf.hasRemaining()) {
+			if (ch.read(buf, size - FOOTER_SIZE + buf.position()) < 0) {
+				throw new EOFException();
+			}
+		}
+		String footer = new String(buf.array(), StandardCharsets.US_ASCII);
+		if (!footer.startsWith(FOOTER_TAG) || footer.charAt(FOOTER_SIZE - 1) != '\n') {
+			return size;
+		}
+
+		long crc;
+		long length;
+		try {
+			int p = FOOTER_TAG.length();
+			crc = Long.parseLong(footer.substring(p, p + 8), 16);
+			length = Long.parseUnsignedLong(footer.substring(p + 9, p + 25), 16);
+		} catch (NumberFormatException nfex) {
+			throw new IOException("Bad checksum footer");
+		}
+		if (length != size - FOOTER_SIZE) {
+			throw new IOException("File is torn: expected " + length + " bytes before the footer");
+		}
+		if (crc(ch, length) != crc) {
+			throw new IOException("File is torn: checksum does not match");
+		}
+		return length;
+	}
+
+	/**
+	 * The CRC-32 of the first length bytes of the channel.
+	 */
+
+	public static long crc(FileChannel ch, long length) throws IOException {
+		CRC32 crc = new CRC32();
+		for (long p = 0; p < length; p += MAX_CHUNK) {
+			crc.update(ch.map(FileChannel.MapMode.READ_ONLY, p, Math.min(MAX_CHUNK, length - p)));
+		}
+		return crc.getValue();
+	}
+
+}
@@ -0,0 +1,261 @@
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+import org.junit.Test;
+
+public class EngineTest {
+
+	// The generation after w's, worked out a cell at a time straight from
+	// the rule, as the engines are checked against.
+
+	private static String reference(World w) {
+		int n = w.getSize();
+		StringBuilder sb = new StringBuilder();
+		for (int row = 0; row < n; row++) {
+			for (int col = 0; col < n; col++) {
+				int count = 0;
+				for (int dr = -1; dr <= 1; dr++) {
+					for (int dc = -1; dc <= 1; dc++) {
+						if ((dr != 0 || dc != 0) && w.get((row + dr + n) % n, (col + dc + n) % n)) {
+							count++;
+						}
+					}
+				}
+				sb.append(w.getRule().next(w.get(row, col), count) ? 'X' : '.');
+			}
+			sb.append('\n');
+		}
+		return sb.toString();
+	}
+
+	// Step a soup with the given engine, checking every generation
+	// against the reference, with tracking on and off.
+
+	private static void checkEngine(LifeEngine engine, String rule, int size) {
+		for (boolean tracking : new boolean[] { true, false }) {
+			World w = TestWorlds.soup(size, size * 31 + rule.length());
+			w.setRule(Rule.parse(rule));
+			w.setEngine(engine);
+			w.setTracking(tracking);
+			for (int g = 0; g < 12; g++) {
+				String expected = reference(w);
+				w.step();
+				assertEquals(engine.getClass().getName() + " " + rule + " " + size + " generation " + g, expected,
+						w.toString());
+			}
+		}
+	}
+
+	// Every engine, on one thread or several, gives the same generations as
+	// the reference: for Conway's rule, for other rules (including one where
+	// empty space comes alive), and for sizes which are not a multiple of
+	// the 64 cells in a word, or even of the 2 in a block.
+
+	@Test
+	public void testEnginesMatchReference() {
+		String[] rules = { "B3/S23", "B36/S23", "B2/S", "B0123478/S01234678" };
+		int[] sizes = { 1, 5, 64, 99, 130 };
+		for (String name : new String[] { "scalar", "swar", "block", "vector" }) {
+			for (int threads : new int[] { 1, 3 }) {
+				LifeEngine engine = Engines.create(name, threads);
+				for (String rule : rules) {
+					for (int size : sizes) {
+						checkEngine(engine, rule, size);
+					}
+				}
+			}
+		}
+	}
+
+	// The live cells of a world, as sorted plane keys.
+
+	private static long[] keys(World w) {
+		long[] keys = new long[(int) w.population()];
+		int n = 0;
+		for (int row = 0; row < w.getSize(); row++) {
+			for (int col = 0; col < w.getSize(); col++) {
+				if (w.get(row, col)) {
+					keys[n++] = SparseLife.key(row, col);
+				}
+			}
+		}
+		java.util.Arrays.sort(keys);
+		return keys;
+	}
+
+	private static long[] sorted(long[] keys) {
+		java.util.Arrays.sort(keys);
+		return keys;
+	}
+
+	// A soup in the middle of a world big enough that nothing reaches the
+	// edges, so wrapping makes no difference and a plane must match it.
+
+	private static World middleSoup(String rule) {
+		World w = new World(256);
+		w.setRule(Rule.parse(rule));
+		java.util.Random r = new java.util.Random(rule.hashCode());
+		for (int row = 118; row < 138; row++) {
+			for (int col = 118; col < 138; col++) {
+				w.set(row, col, r.nextBoolean());
+			}
+		}
+		return w;
+	}
+
+	// HashLife's jumps of 2^k generations, in any combination, match
+	// stepping a world one generation at a time.
+
+	@Test
+	public void testHashLifeMatchesWorld() {
+		for (String rule : new String[] { "B3/S23", "B36/S23" }) {
+			World w = middleSoup(rule);
+			w.setEngine(new SwarEngine());
+			HashLife life = HashLife.fromWorld(w);
+			long[] steps = { 1, 7, 32, 60, 5, 3, 6 };
+			for (long n : steps) {
+				w.step(n);
+				life.step(n);
+				assertEquals(w.population(), life.population());
+				assertArrayEquals(keys(w), sorted(life.cells()));
+			}
+		}
+	}
+
+	// Jumps of different sizes, as step() makes for a count which is not a
+	// power of two, keep each other's results: a glider run a million
+	// generations at a time, each split into several jumps, ends up where
+	// it should.
+
+	@Test
+	public void testHashLifeMixedJumps() {
+		HashLife life = new HashLife();
+		life.set(0, 1, true);
+		life.set(1, 2, true);
+		life.set(2, 0, true);
+		life.set(2, 1, true);
+		life.set(2, 2, true);
+		long steps = 4 * 250001L;
+		for (int j = 1; j <= 3; j++) {
+			life.step(steps);
+			long d = j * 250001L;
+			assertEquals(5, life.population());
+			assertTrue(life.get(d, d + 1));
+			assertTrue(life.get(d + 1, d + 2));
+			assertTrue(life.get(d + 2, d));
+			assertTrue(life.get(d + 2, d + 1));
+			assertTrue(life.get(d + 2, d + 2));
+		}
+		assertEquals(3 * steps, life.getGeneration());
+	}
+
+	// SparseLife matches stepping a world too, and carries on past the
+	// edges of the world it came from without wrapping.
+
+	@Test
+	public void testSparseLifeMatchesWorld() {
+		for (String rule : new String[] { "B3/S23", "B36/S23" }) {
+			World w = middleSoup(rule);
+			w.setEngine(new SwarEngine());
+			SparseLife life = SparseLife.fromWorld(w);
+			for (int g = 0; g < 100; g++) {
+				w.step();
+				life.step();
+			}
+			assertEquals(w.population(), life.population());
+			assertArrayEquals(keys(w), sorted(life.cells()));
+		}
+
+		// A glider heading up and to the left from the corner
+		SparseLife glider = new SparseLife();
+		glider.set(0, 0, true);
+		glider.set(0, 1, true);
+		glider.set(0, 2, true);
+		glider.set(1, 0, true);
+		glider.set(2, 1, true);
+		glider.step(400);
+		assertEquals(5, glider.population());
+		assertTrue(glider.get(-100, -100));
+		assertTrue(glider.get(-100, -99));
+		assertTrue(glider.get(-100, -98));
+		assertTrue(glider.get(-99, -100));
+		assertTrue(glider.get(-98, -99));
+	}
+
+	// Tracking starts out computing every tile, then skips a block which
+	// never changes, and computes only the tiles around a blinker.
+
+	@Test
+	public void testActiveTileCount() {
+		World w = new World(512);
+		w.set(100, 100, true);
+		w.set(100, 101, true);
+		w.set(101, 100, true);
+		w.set(101, 101, true);
+		w.step();
+		assertEquals(w.getTileCount(), w.getActiveTileCount());
+		w.step();
+		assertEquals(0, w.getActiveTileCount());
+
+		w.set(300, 300, true);
+		w.set(300, 301, true);
+		w.set(300, 302, true);
+		w.step();
+		assertEquals(9, w.getActiveTileCount());
+		w.step();
+		assertEquals(9, w.getActiveTileCount());
+	}
+
+	// A world kept off the heap steps exactly like one on it, with every
+	// engine. Its chunks are made 16 words long here, so rows and tiles
+	// straddle chunk boundaries as they would at 2^27 words in a real
+	// hundred-gigabit world.
+
+	@Test
+	public void testOffHeapMatchesHeap() {
+		for (String name : new String[] { "scalar", "swar", "block", "vector" }) {
+			for (int size : new int[] { 99, 200 }) {
+				World heap = TestWorlds.soup(size, size);
+				World offHeap = new World(new OffHeapBitGrid(size, size, 4));
+				offHeap.copyFrom(heap);
+				assertTrue(offHeap.isOffHeap());
+				heap.setEngine(Engines.create(name, 2));
+				offHeap.setEngine(Engines.create(name, 2));
+				for (int g = 0; g < 30; g++) {
+					heap.step();
+					offHeap.step();
+					assertEquals(name + " " + size + " generation " + g, heap.toString(), offHeap.toString());
+				}
+				assertEquals(heap.population(), offHeap.population());
+				assertTrue(offHeap.undo());
+				heap.undo();
+				assertEquals(heap.toString(), offHeap.toString());
+			}
+		}
+	}
+
+	// The vector engine is only there if vector/ was built and the
+	// JVM has the incubator module (see runTest.sh). When it is,
+	// World's active-tile runs must be wide enough for its lane loop
+	// to do the work, and the result must match the SWAR engine.
+
+	@Test
+	public void testVectorLaneLoopRuns() throws Exception {
+		LifeEngine engine = Engines.create("vector", 1);
+		assumeTrue(engine.getClass().getName().equals("VectorEngine"));
+
+		World vector = TestWorlds.soup(1024, 7);
+		vector.setEngine(engine);
+		World swar = TestWorlds.soup(1024, 7);
+		swar.setEngine(new SwarEngine());
+		for (int j = 0; j < 20; j++) {
+			vector.step();
+			swar.step();
+			assertEquals(swar.toString(), vector.toString());
+		}
+
+		long words = (Long) engine.getClass().getMethod("getVectorWords").invoke(engine);
+		assertTrue(words > 0);
+	}
+
+}
@@ -0,0 +1,52 @@
+public class Engines {
+
+	public static final String DEFAULT = "swar";
+
+	/**
+	 * Names accepted by create(), for usage messages.
+	 */
+
+	public static final String NAMES = "scalar, swar, block, vector";
+
+	/**
+	 * Build the engine with the given name, split across the given number of
+	 * threads. Returns null if there is no engine with that name.
+	 */
+
+	public static LifeEngine create(String name, int threads) {
+		LifeEngine engine;
+		if (name.equals("scalar")) {
+			engine = new ScalarEngine();
+		} else if (name.equals("swar")) {
+			engine = new SwarEngine();
+		} else if (name.equals("block")) {
+			engine = new BlockEngine();
+		} else if (name.equals("vector")) {
+			engine = createVector();
+		} else {
+			return null;
+		}
+		if (threads > 1) {
+			engine = new ParallelEngine(engine, threads);
+		}
+		return engine;
+	}
+
+	/**
+	 * The Vector API engine, if it was built (see runVector.sh) and the JVM was
+	 * started with --add-modules jdk.incubator.vector. Otherwise the SWAR engine,
+	 * which gives the same results.
+	 */
+
+	private static LifeEngine createVector() {
+		try {
+			return (LifeEngine) Class.forName("VectorEngine").getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException roex) {
+			System.out.println("The vector engine was not built; using swar instead");
+		} catch (LinkageError lex) {
+			System.out.println("The Vector API is not enabled; using swar instead");
+		}
+		return new SwarEngine();
+	}
+
+}
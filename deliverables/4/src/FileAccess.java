@@ -1,5 +1,8 @@
 import java.util.*;
+import java.util.zip.*;
 import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
 import java.nio.file.*;
 
 public class FileAccess {
@@ -20,59 +23,118 @@ public class FileAccess {
 	}
 
 	/**
-	 * "Safe save". Write the string to a backup file, then copy it over the last
-	 * saved file, and if everything is OK, delete the originally written file.
+	 * Save a world in the same format as saveFile(fileName, world.toString()),
+	 * streaming the rows straight to the file.
 	 */
 
-	public static boolean safeSaveFile(String fileToWrite, String backupFile, String m) {
+	public static boolean saveFile(String fileName, World world) {
+		try {
+			writeText(Paths.get(fileName), world);
+			return true;
+		} catch (IOException ioex) {
+			return false;
+		}
+	}
 
-		// If there is any error, return false to
-		// let the user know.
+	/**
+	 * "Safe save" a world, like safeSaveFile(), but streaming the rows straight to
+	 * the temporary file.
+	 */
 
+	public static boolean safeSaveFile(String fileToWrite, String backupFile, World world) {
 		try {
+			Path target = Paths.get(fileToWrite);
+			Path temp = DurableFile.tempFor(target, backupFile);
+			boolean replaced = false;
+			try {
+				FileChannel out = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE);
+				try {
+					new TextWriter(out).write(world.getCells(), System.lineSeparator());
+					long length = out.position();
+					DurableFile.finish(out, length, DurableFile.crc(out, length));
+				} finally {
+					out.close();
+				}
+				DurableFile.replace(temp, target);
+				replaced = true;
+			} finally {
+				if (!replaced) {
+					DurableFile.discard(temp);
+				}
+			}
+			return true;
+		} catch (IOException ioex) {
+			return false;
+		}
+	}
 
-			// Unlike the assignment, there is no
-			// need to read anything in from the
-			// original file. Let's write directly
-			// to the backup file. However, for
-			// you could start by reading the
-			// previous data.
+	private static void writeText(Path path, World world) throws IOException {
+		FileChannel out = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			new TextWriter(out).write(world.getCells(), System.lineSeparator());
+		} finally {
+			out.close();
+		}
+	}
 
-			// Write directly to the BACKUP file first.
+	/**
+	 * "Safe save". Write the string to a temporary file next to the saved file,
+	 * make sure it is on disk, then rename it over the saved file.
+	 */
 
-			PrintWriter out = new PrintWriter(backupFile);
-			out.println(m);
-			out.close();
+	public static boolean safeSaveFile(String fileToWrite, String backupFile, String m) {
 
-			// The file is now closed. We now
-			// have a "backup copy", but our original
-			// saved file is still safe. Any error
-			// before this point is going to throw
-			// an exception and our original file
-			// is still safe.
+		// If there is any error, return false to
+		// let the user know.
+
+		try {
 
-			// Now let's copy over the "backup copy"
-			// to replace the old saved file.
+			// Write the temporary file first, in the
+			// same directory as the saved file, so
+			// the rename below cannot cross file
+			// systems. Its name is unique, so another
+			// save at the same time cannot clobber
+			// it. It ends with a checksum footer so
+			// loadFile() can tell if it is torn.
 
-			File a = new File(fileToWrite);
-			File b = new File(backupFile);
-			Files.copy(b.toPath(), a.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			Path target = Paths.get(fileToWrite);
+			Path temp = DurableFile.tempFor(target, backupFile);
+			byte[] data = (m + System.lineSeparator()).getBytes();
+			CRC32 crc = new CRC32();
+			crc.update(data);
 
-			// So now we have two copies of the
-			// new file - the new one we just wrote
-			// in backupCopy, and the copy we just
-			// copied over the old saved copy.
-			// But we don't need two copies, so
-			// delete the original one we put
-			// in backupCopy.
+			boolean replaced = false;
+			try {
+				FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE);
+				try {
+					ByteBuffer buf = ByteBuffer.wrap(data);
+					while (buf.hasRemaining()) {
+						out.write(buf);
+					}
+					DurableFile.finish(out, data.length, crc.getValue());
+				} finally {
+					out.close();
+				}
 
-			Files.delete(b.toPath());
+				// The temporary file is now on disk, and
+				// our original saved file is still safe.
+				// Renaming replaces it in one step, so
+				// there is never a moment when the saved
+				// file is half written, and nothing is
+				// written twice.
+
+				DurableFile.replace(temp, target);
+				replaced = true;
+			} finally {
+				// Don't leave a failed save's temporary
+				// file lying around
+				if (!replaced) {
+					DurableFile.discard(temp);
+				}
+			}
 
 			// If we got here, no problems!
-			// We now have one saved file,
-			// and if any problems occurred,
-			// we wouldn't have gotten here.
-			// So just return true (== success).
 
 			return true;
 		} catch (IOException ioex) {
@@ -93,7 +155,8 @@ public class FileAccess {
 
 	/**
 	 * Load file and return an ArrayList of Strings which equates to the contents of
-	 * the file.
+	 * the file. A file saved by safeSaveFile() is checked against its checksum
+	 * footer first, and rejected if it does not match.
 	 */
 
 	public static ArrayList<String> loadFile(String fileName) {
@@ -102,6 +165,14 @@ public class FileAccess {
 
 		try {
 			File f = new File(fileName);
+			long length;
+			FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ);
+			try {
+				length = DurableFile.checkedLength(ch);
+			} finally {
+				ch.close();
+			}
+
 			Scanner sc = new Scanner(f);
 
 			while (sc.hasNextLine()) {
@@ -109,9 +180,14 @@ public class FileAccess {
 			}
 
 			sc.close();
-		} catch (FileNotFoundException fnfex) {
-			// Any error, return null - nothing
-			// there.
+
+			// The footer is not part of the world
+			if (length < f.length()) {
+				lines.remove(lines.size() - 1);
+			}
+		} catch (IOException ioex) {
+			// Any error, including a torn file,
+			// return null - nothing there.
 			return null;
 		}
 
@@ -119,4 +195,138 @@ public class FileAccess {
 
 	}
 
+	/**
+	 * Load a pattern in run-length encoded (RLE) format into the middle of a new
+	 * world, at least minSize on a side and with at least margin empty cells
+	 * around the pattern, stepped by the rule named in the file (Conway's if
+	 * none). Returns null if the file cannot be read or parsed.
+	 */
+
+	public static World loadRle(String fileName, int minSize, int margin) {
+		try {
+			FileChannel in = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+			try {
+				RleReader reader = new RleReader();
+				BitGrid cells = reader.readCentred(in, minSize, margin);
+				World world = new World(cells.getRows());
+				world.load(cells);
+				if (reader.getRule() != null) {
+					world.setRule(Rule.parse(reader.getRule()));
+				}
+				return world;
+			} finally {
+				in.close();
+			}
+		} catch (IOException ioex) {
+			return null;
+		} catch (IllegalArgumentException iaex) {
+			// A rule which is not Life-like
+			return null;
+		}
+	}
+
+	/**
+	 * Load a pattern in RLE format into an existing world, top left corner first.
+	 * Cells which do not fit are dropped, and the world takes the rule named in
+	 * the file, if any. Returns false if the file cannot be read or parsed, in
+	 * which case the world is unchanged.
+	 */
+
+	public static boolean loadRle(String fileName, World world) {
+		try {
+			FileChannel in = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+			try {
+				RleReader reader = new RleReader();
+				BitGrid cells = reader.read(in, world.getSize());
+				Rule rule = reader.getRule() != null ? Rule.parse(reader.getRule()) : world.getRule();
+				world.load(cells);
+				world.setRule(rule);
+				return true;
+			} finally {
+				in.close();
+			}
+		} catch (IOException ioex) {
+			return false;
+		} catch (IllegalArgumentException iaex) {
+			// A rule which is not Life-like
+			return false;
+		}
+	}
+
+	/**
+	 * Save a world in RLE format.
+	 */
+
+	public static boolean saveRle(String fileName, World world) {
+		try {
+			FileChannel out = FileChannel.open(Paths.get(fileName), StandardOpenOption.WRITE,
+					StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+			try {
+				new RleWriter(out).write(world.getCells(), world.getRule().toString());
+				return true;
+			} finally {
+				out.close();
+			}
+		} catch (IOException ioex) {
+			return false;
+		}
+	}
+
+	/**
+	 * Save the smallest box holding the given live cells of a plane, as keys made
+	 * by SparseLife.key(row, col), in RLE format.
+	 */
+
+	public static boolean saveRle(String fileName, long[] cells, Rule rule) {
+		try {
+			FileChannel out = FileChannel.open(Paths.get(fileName), StandardOpenOption.WRITE,
+					StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+			try {
+				new RleWriter(out).write(cells, rule.toString());
+				return true;
+			} finally {
+				out.close();
+			}
+		} catch (IOException ioex) {
+			return false;
+		}
+	}
+
+	/**
+	 * Load a binary snapshot, written by saveSnapshot(), into a new world of the
+	 * size it was saved at. Returns null if the file cannot be read or is not a
+	 * snapshot.
+	 */
+
+	public static World loadSnapshot(String fileName) {
+		return loadSnapshot(fileName, false);
+	}
+
+	/**
+	 * Like loadSnapshot(fileName), keeping the cells off the heap if offHeap is
+	 * true.
+	 */
+
+	public static World loadSnapshot(String fileName, boolean offHeap) {
+		try {
+			return SnapshotFile.read(Paths.get(fileName), offHeap);
+		} catch (IOException ioex) {
+			return null;
+		}
+	}
+
+	/**
+	 * Save a world, including its generation, as a binary snapshot. This is much
+	 * faster than saveFile() for big worlds and takes an eighth of the space.
+	 */
+
+	public static boolean saveSnapshot(String fileName, World world) {
+		try {
+			SnapshotFile.write(Paths.get(fileName), world);
+			return true;
+		} catch (IOException ioex) {
+			return false;
+		}
+	}
+
 }
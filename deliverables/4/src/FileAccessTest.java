@@ -0,0 +1,273 @@
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileAccessTest {
+
+	// Rule here is the game's rule class, so JUnit's is named in full
+	@org.junit.Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private String path(String name) {
+		return new File(folder.getRoot(), name).getPath();
+	}
+
+	private String write(String name, String contents) throws Exception {
+		String p = path(name);
+		PrintWriter out = new PrintWriter(p);
+		out.print(contents);
+		out.close();
+		return p;
+	}
+
+	// --------------------------------------------------------------
+	// RLE
+	// --------------------------------------------------------------
+
+	// Saving a world as RLE and loading it back into a world of the same
+	// size gives the same cells and rule, including at sizes which are
+	// not a multiple of 64.
+
+	@Test
+	public void testRleRoundTrip() {
+		for (int size : new int[] { 1, 63, 64, 65, 200 }) {
+			World w = TestWorlds.soup(size, size);
+			w.setRule(Rule.parse("B36/S23"));
+			String p = path("world" + size + ".rle");
+			assertTrue(FileAccess.saveRle(p, w));
+			World back = new World(size);
+			assertTrue(FileAccess.loadRle(p, back));
+			assertEquals(w.toString(), back.toString());
+			assertEquals(w.getRule(), back.getRule());
+		}
+	}
+
+	// A pattern with comments, counts and line breaks, as found in the
+	// wild, goes in the middle of a world with the margin around it.
+
+	@Test
+	public void testRleCentredWithMargin() throws Exception {
+		String p = write("glider.rle", "#N Glider\n#C A comment\nx = 3, y = 3, rule = B3/S23\nbob$2b\no$3o!\n");
+		World w = FileAccess.loadRle(p, 0, 10);
+		assertEquals(23, w.getSize());
+		assertEquals(5, w.population());
+		assertTrue(w.get(10, 11));
+		assertTrue(w.get(11, 12));
+		assertTrue(w.get(12, 10));
+		assertTrue(w.get(12, 11));
+		assertTrue(w.get(12, 12));
+
+		World big = FileAccess.loadRle(p, 101, 0);
+		assertEquals(101, big.getSize());
+		assertTrue(big.get(49, 50));
+	}
+
+	// Live cells of a plane, anywhere, come back as the smallest box
+	// holding them.
+
+	@Test
+	public void testRlePlaneCells() {
+		long[] cells = { SparseLife.key(-5, 7), SparseLife.key(-5, 8), SparseLife.key(3, -2),
+				SparseLife.key(3, 70) };
+		String p = path("plane.rle");
+		assertTrue(FileAccess.saveRle(p, cells.clone(), Rule.CONWAY));
+		World w = new World(73);
+		assertTrue(FileAccess.loadRle(p, w));
+		assertEquals(4, w.population());
+		assertTrue(w.get(0, 9));
+		assertTrue(w.get(0, 10));
+		assertTrue(w.get(8, 0));
+		assertTrue(w.get(8, 72));
+	}
+
+	// Garbage is rejected rather than loaded as something else.
+
+	@Test
+	public void testRleRejectsGarbage() throws Exception {
+		String p = write("bad.rle", "x = 3, y = 3\nbo$2bo$3o%!\n");
+		assertNull(FileAccess.loadRle(p, 0, 0));
+	}
+
+	// --------------------------------------------------------------
+	// SNAPSHOTS
+	// --------------------------------------------------------------
+
+	// A snapshot keeps the cells, generation and rule, on or off the heap.
+
+	@Test
+	public void testSnapshotRoundTrip() {
+		for (int size : new int[] { 1, 64, 130 }) {
+			World w = TestWorlds.soup(size, size + 1);
+			w.setRule(Rule.parse("B36/S23"));
+			w.step(3);
+			String p = path("world" + size + ".snap");
+			assertTrue(FileAccess.saveSnapshot(p, w));
+			for (boolean offHeap : new boolean[] { false, true }) {
+				World back = FileAccess.loadSnapshot(p, offHeap);
+				assertEquals(w.toString(), back.toString());
+				assertEquals(3, back.getGeneration());
+				assertEquals(w.getRule(), back.getRule());
+				assertEquals(offHeap, back.isOffHeap());
+			}
+		}
+	}
+
+	// An off-heap world loaded from a snapshot steps on like the world it
+	// was saved from, and saves a snapshot the heap can load again.
+
+	@Test
+	public void testSnapshotOffHeapRoundTrip() {
+		World w = TestWorlds.soup(200, 4);
+		String p = path("offheap.snap");
+		assertTrue(FileAccess.saveSnapshot(p, w));
+		World back = FileAccess.loadSnapshot(p, true);
+		assertTrue(back.isOffHeap());
+		w.step(10);
+		back.step(10);
+		assertEquals(w.toString(), back.toString());
+
+		String again = path("again.snap");
+		assertTrue(FileAccess.saveSnapshot(again, back));
+		World heap = FileAccess.loadSnapshot(again);
+		assertFalse(heap.isOffHeap());
+		assertEquals(w.toString(), heap.toString());
+		assertEquals(10, heap.getGeneration());
+	}
+
+	// A snapshot with a byte changed or missing is not loaded.
+
+	@Test
+	public void testSnapshotRejectsCorruption() throws Exception {
+		String p = path("world.snap");
+		assertTrue(FileAccess.saveSnapshot(p, TestWorlds.soup(100, 3)));
+		byte[] bytes = Files.readAllBytes(Paths.get(p));
+
+		byte[] flipped = bytes.clone();
+		flipped[SnapshotFile.HEADER_SIZE + 40] ^= 4;
+		Files.write(Paths.get(p), flipped);
+		assertNull(FileAccess.loadSnapshot(p));
+
+		Files.write(Paths.get(p), Arrays.copyOf(bytes, bytes.length - 100));
+		assertNull(FileAccess.loadSnapshot(p));
+	}
+
+	// --------------------------------------------------------------
+	// WRITE AND SAFE SAVE
+	// --------------------------------------------------------------
+
+	// Streaming a world out gives the same file as writing its string, and
+	// loads back as the same world.
+
+	@Test
+	public void testTextRoundTrip() throws Exception {
+		for (int size : new int[] { 1, 63, 130 }) {
+			World w = TestWorlds.soup(size, size + 2);
+			String streamed = path("streamed" + size + ".txt");
+			String written = path("written" + size + ".txt");
+			assertTrue(FileAccess.saveFile(streamed, w));
+			assertTrue(FileAccess.saveFile(written, w.toString()));
+			assertArrayEquals(Files.readAllBytes(Paths.get(written)), Files.readAllBytes(Paths.get(streamed)));
+			assertEquals(w.toString(), new World(FileAccess.loadFile(streamed)).toString());
+		}
+	}
+
+	// Safe save replaces the file in one go, leaves no temporary file
+	// behind, and the checksum footer is not part of the world loaded.
+	// The streaming and string versions agree.
+
+	@Test
+	public void testSafeSaveRoundTrip() throws Exception {
+		World w = TestWorlds.soup(70, 4);
+		String p = path("safe.txt");
+		assertTrue(FileAccess.saveFile(p, TestWorlds.soup(70, 5)));
+		assertTrue(FileAccess.safeSaveFile(p, "safe.tmp", w));
+		assertEquals(w.toString(), new World(FileAccess.loadFile(p)).toString());
+
+		String q = path("safe2.txt");
+		assertTrue(FileAccess.safeSaveFile(q, "safe.tmp", w.toString()));
+		assertArrayEquals(Files.readAllBytes(Paths.get(p)), Files.readAllBytes(Paths.get(q)));
+		assertEquals(2, folder.getRoot().list().length);
+	}
+
+	// Saves into the same directory at the same time, with the same
+	// temporary name, each get a temporary file of their own, so every
+	// one of them ends up whole.
+
+	@Test
+	public void testConcurrentSafeSaves() throws Exception {
+		final World[] worlds = { TestWorlds.soup(200, 7), TestWorlds.soup(200, 8), TestWorlds.soup(200, 9), TestWorlds.soup(200, 10) };
+		final boolean[] ok = new boolean[worlds.length];
+		Thread[] threads = new Thread[worlds.length];
+		for (int j = 0; j < worlds.length; j++) {
+			final int n = j;
+			threads[j] = new Thread() {
+				public void run() {
+					ok[n] = true;
+					for (int k = 0; k < 20; k++) {
+						String target = path("saved" + n + ".txt");
+						if (n % 2 == 0) {
+							ok[n] &= FileAccess.safeSaveFile(target, "temptemp.txt", worlds[n]);
+						} else {
+							ok[n] &= FileAccess.safeSaveFile(target, "temptemp.txt", worlds[n].toString());
+						}
+					}
+				}
+			};
+			threads[j].start();
+		}
+		for (int j = 0; j < worlds.length; j++) {
+			threads[j].join();
+			assertTrue(ok[j]);
+			ArrayList<String> lines = FileAccess.loadFile(path("saved" + j + ".txt"));
+			assertEquals(worlds[j].toString(), new World(lines).toString());
+		}
+		assertEquals(worlds.length, folder.getRoot().list().length);
+	}
+
+	// A save which fails leaves the old file alone and no temporary file
+	// behind.
+
+	@Test
+	public void testFailedSafeSaveCleansUp() throws Exception {
+		// A directory with something in it cannot be replaced
+		File target = folder.newFolder("taken");
+		write("taken/keep.txt", "keep");
+		assertFalse(FileAccess.safeSaveFile(target.getPath(), "temptemp.txt", TestWorlds.soup(30, 1)));
+		assertFalse(FileAccess.safeSaveFile(target.getPath(), "temptemp.txt", "XX"));
+		assertFalse(FileAccess.saveSnapshot(target.getPath(), TestWorlds.soup(30, 1)));
+		assertTrue(new File(target, "keep.txt").exists());
+		assertEquals(1, folder.getRoot().list().length);
+	}
+
+	// A safe saved file with a cell changed, or cut short, fails its
+	// checksum and is not loaded. A file with no footer still loads.
+
+	@Test
+	public void testSafeSaveRejectsCorruption() throws Exception {
+		World w = TestWorlds.soup(40, 6);
+		String p = path("safe.txt");
+		assertTrue(FileAccess.safeSaveFile(p, "safe.tmp", w));
+		byte[] bytes = Files.readAllBytes(Paths.get(p));
+
+		byte[] changed = bytes.clone();
+		changed[5] = (byte) (changed[5] == '.' ? 'X' : '.');
+		Files.write(Paths.get(p), changed);
+		assertNull(FileAccess.loadFile(p));
+
+		byte[] cut = Arrays.copyOfRange(bytes, 41, bytes.length);
+		Files.write(Paths.get(p), cut);
+		assertNull(FileAccess.loadFile(p));
+
+		Files.write(Paths.get(p), Arrays.copyOf(bytes, bytes.length - DurableFile.FOOTER_SIZE));
+		assertEquals(w.toString(), new World(FileAccess.loadFile(p)).toString());
+	}
+
+}
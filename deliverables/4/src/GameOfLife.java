@@ -1,25 +1,330 @@
+import javax.swing.*;
+
 public class GameOfLife {
 
+    private static final int DEFAULT_HISTORY_MB = 64;
+
+    // Bigger worlds are drawn on a canvas by default,
+    // since a button per cell gets too slow
+    private static final int MAX_BUTTONS_SIZE = 100;
+
+    // and a canvas holds an image of the whole world, so
+    // even bigger ones are shown through a viewport
+    private static final int MAX_CANVAS_SIZE = 2000;
+
+    private static final long DEFAULT_AUTOSAVE_GENERATIONS = 1000;
+
+    private static final double DEFAULT_AUTOSAVE_SECONDS = 30;
+
+    private static final int DEFAULT_SOUP_WORLD_SIZE = 128;
+
+    private static final int DEFAULT_SOUP_SIZE = 16;
+
+    private static final long DEFAULT_SOUP_GENERATIONS = 10000;
+
     private static void showErrorMessage() {
-	System.out.println("Usage: java GameOfLife <size>");
+	System.out.println("Usage: java GameOfLife <size> [--threads <n>] [--engine <name>] [--history <MB>]");
+	System.out.println("       [--renderer buttons|canvas|viewport] [--rate <generations/sec>]");
+	System.out.println("       [--autosave <name> [--autosave-every <generations>] [--autosave-seconds <s>]]");
+	System.out.println("       [--on-cycle report|stop] [--rule <B/S rule>] [--off-heap]");
+	System.out.println("       [--record <file> [--keyframes <generations>]]");
+	System.out.println("   or: java GameOfLife --play <file> [--at <generation>] [--out <file>] [GUI options]");
+	System.out.println("   or: java GameOfLife [<size>] --batch <pattern file> --generations <n> [--out <file>]");
+	System.out.println("       [--threads <n>] [--engine <name>] [--on-cycle report|skip] [--rule <B/S rule>]");
+	System.out.println("       [--off-heap] [--record <file> [--keyframes <generations>]]");
+	System.out.println("   or: java GameOfLife [<size>] --soup <count> [--soup-size <n>] [--seed <n>]");
+	System.out.println("       [--generations <n>] [--out <file>] [--threads <n>] [--engine <name>] [--rule <B/S rule>]");
 	System.out.println("Size must be a positive integer");
+	System.out.println("Engine is one of: " + Engines.NAMES + " (default: " + Engines.DEFAULT + ")");
+	System.out.println("Threads is the number of threads used to step the world");
+	System.out.println("(default: one per processor)");
+	System.out.println("History is how much memory undo may use (default: " + DEFAULT_HISTORY_MB
+		+ ", or 0 with --off-heap)");
+	System.out.println("Rate limits Run Continuous (default: 0, as fast as possible)");
+	System.out.println("Renderer defaults to buttons up to size " + MAX_BUTTONS_SIZE + ", canvas up to "
+		+ MAX_CANVAS_SIZE + " and viewport above");
+	System.out.println("Autosave saves to name.snap and name.log every " + DEFAULT_AUTOSAVE_GENERATIONS
+		+ " generations or " + (long) DEFAULT_AUTOSAVE_SECONDS + " seconds");
+	System.out.println("by default, and carries on from them if they exist, in which case size may be left out");
+	System.out.println("Rule is a Life-like rule such as B3/S23 (the default) or B36/S23");
+	System.out.println("Off heap keeps the cells outside the Java heap, for worlds bigger than it; their");
+	System.out.println("limit is set with -XX:MaxDirectMemorySize instead of -Xmx");
+	System.out.println("Batch mode runs the pattern with no GUI, writes the result to the out file");
+	System.out.println("and reports its speed. It runs in a world of the given size, or else one sized by");
+	System.out.println("the pattern, with " + BatchRunner.DEFAULT_RLE_MARGIN
+		+ " empty cells around RLE patterns. It also accepts the hashlife and");
+	System.out.println("sparse engines, which run on one thread and cannot be used with --record or --on-cycle");
+	System.out.println("On cycle reports when the world starts repeating itself, and then stops running,");
+	System.out.println("or in batch mode skips the rest of the repeats");
+	System.out.println("Record writes every generation to a file, with a whole keyframe every "
+		+ Recorder.DEFAULT_KEYFRAME_INTERVAL + " by default");
+	System.out.println("Play opens a recording at the given generation (default: the first), or writes");
+	System.out.println("that generation to the out file");
+	System.out.println("Soup runs count random soups (default " + DEFAULT_SOUP_SIZE + " x " + DEFAULT_SOUP_SIZE
+		+ ") in a world of the given size (default " + DEFAULT_SOUP_WORLD_SIZE + ")");
+	System.out.println("until each repeats or reaches the generations limit (default " + DEFAULT_SOUP_GENERATIONS
+		+ "), and writes a census of");
+	System.out.println("the objects left to the out file");
 	System.exit(1);
     }
     
     public static void main(String[] args) {
 	int size = -1;
+	int threads = Runtime.getRuntime().availableProcessors();
+	boolean threadsGiven = false;
+	String engineName = Engines.DEFAULT;
+	Long historyMB = null;
+	String renderer = null;
+	double rate = 0;
+	String batchFile = null;
+	String outFile = null;
+	long generations = -1;
+	String autosaveName = null;
+	String onCycle = null;
+	Rule rule = null;
+	boolean offHeap = false;
+	long soups = -1;
+	int soupSize = DEFAULT_SOUP_SIZE;
+	long seed = System.currentTimeMillis();
+	String recordFile = null;
+	long keyframes = Recorder.DEFAULT_KEYFRAME_INTERVAL;
+	String playFile = null;
+	long playAt = -1;
+	long autosaveGenerations = DEFAULT_AUTOSAVE_GENERATIONS;
+	double autosaveSeconds = DEFAULT_AUTOSAVE_SECONDS;
 	
-	if (args.length != 1) {
+	if (args.length < 1) {
 	    showErrorMessage();
 	}
 	
 	try {
-	    size = Integer.parseInt(args[0]);
+	    for (int j = 0; j < args.length; j++) {
+		if (!args[j].startsWith("--") && size == -1) {
+		    size = Integer.parseInt(args[j]);
+		} else if (args[j].equals("--batch") && j + 1 < args.length) {
+		    batchFile = args[++j];
+		} else if (args[j].equals("--generations") && j + 1 < args.length) {
+		    generations = Long.parseLong(args[++j]);
+		} else if (args[j].equals("--out") && j + 1 < args.length) {
+		    outFile = args[++j];
+		} else if (args[j].equals("--threads") && j + 1 < args.length) {
+		    threads = Integer.parseInt(args[++j]);
+		    threadsGiven = true;
+		} else if (args[j].equals("--engine") && j + 1 < args.length) {
+		    engineName = args[++j];
+		} else if (args[j].equals("--history") && j + 1 < args.length) {
+		    historyMB = Long.parseLong(args[++j]);
+		} else if (args[j].equals("--renderer") && j + 1 < args.length) {
+		    renderer = args[++j];
+		} else if (args[j].equals("--rate") && j + 1 < args.length) {
+		    rate = Double.parseDouble(args[++j]);
+		} else if (args[j].equals("--rule") && j + 1 < args.length) {
+		    rule = Rule.parse(args[++j]);
+		} else if (args[j].equals("--soup") && j + 1 < args.length) {
+		    soups = Long.parseLong(args[++j]);
+		} else if (args[j].equals("--soup-size") && j + 1 < args.length) {
+		    soupSize = Integer.parseInt(args[++j]);
+		} else if (args[j].equals("--record") && j + 1 < args.length) {
+		    recordFile = args[++j];
+		} else if (args[j].equals("--keyframes") && j + 1 < args.length) {
+		    keyframes = Long.parseLong(args[++j]);
+		} else if (args[j].equals("--play") && j + 1 < args.length) {
+		    playFile = args[++j];
+		} else if (args[j].equals("--at") && j + 1 < args.length) {
+		    playAt = Long.parseLong(args[++j]);
+		} else if (args[j].equals("--seed") && j + 1 < args.length) {
+		    seed = Long.parseLong(args[++j]);
+		} else if (args[j].equals("--off-heap")) {
+		    offHeap = true;
+		} else if (args[j].equals("--on-cycle") && j + 1 < args.length) {
+		    onCycle = args[++j];
+		} else if (args[j].equals("--autosave") && j + 1 < args.length) {
+		    autosaveName = args[++j];
+		} else if (args[j].equals("--autosave-every") && j + 1 < args.length) {
+		    autosaveGenerations = Long.parseLong(args[++j]);
+		} else if (args[j].equals("--autosave-seconds") && j + 1 < args.length) {
+		    autosaveSeconds = Double.parseDouble(args[++j]);
+		} else {
+		    showErrorMessage();
+		}
+	    }
 	} catch (Exception ex) {
 	    showErrorMessage();
 	}
-	    
-	MainFrame mf = new MainFrame(size);
+
+	if (batchFile != null) {
+	    if ((size != -1 && size < 1) || generations < 0 || threads < 1
+		|| (onCycle != null && !onCycle.equals("report") && !onCycle.equals("skip"))) {
+		showErrorMessage();
+	    }
+	    if ((engineName.equals("hashlife") || engineName.equals("sparse"))
+		&& (recordFile != null || onCycle != null || threadsGiven)) {
+		// These step the plane their own way, not the
+		// world these options work on
+		showErrorMessage();
+	    }
+	    BatchRunner batch = new BatchRunner(batchFile, outFile, generations, engineName, threads);
+	    batch.setSize(size);
+	    batch.setOnCycle(onCycle);
+	    batch.setRule(rule);
+	    batch.setOffHeap(offHeap);
+	    if (recordFile != null) {
+		if (keyframes < 1) {
+		    showErrorMessage();
+		}
+		batch.setRecord(recordFile, keyframes);
+	    }
+	    System.exit(batch.run() ? 0 : 1);
+	}
+
+	if (soups != -1) {
+	    if (size == -1) {
+		size = DEFAULT_SOUP_WORLD_SIZE;
+	    }
+	    if (generations == -1) {
+		generations = DEFAULT_SOUP_GENERATIONS;
+	    }
+	    if (soups < 0 || soupSize < 1 || size < soupSize || generations < 0 || threads < 1) {
+		showErrorMessage();
+	    }
+	    SoupSearch search = new SoupSearch(size, soupSize, soups, seed, engineName, threads, outFile);
+	    search.setMaxGenerations(generations);
+	    if (rule != null) {
+		search.setRule(rule);
+	    }
+	    System.exit(search.run() ? 0 : 1);
+	}
+
+	World restored = null;
+	if (playFile != null) {
+	    if (size != -1 || autosaveName != null) {
+		showErrorMessage();
+	    }
+	    try {
+		Player player = new Player(playFile);
+		try {
+		    System.out.println(playFile + " holds generations " + player.getFirstGeneration() + " to "
+			+ player.getLastGeneration());
+		    restored = player.seek(playAt == -1 ? player.getFirstGeneration() : playAt).copy();
+		} finally {
+		    player.close();
+		}
+	    } catch (java.io.IOException ioex) {
+		System.out.println("Could not play " + playFile + ": " + ioex.getMessage());
+		System.exit(1);
+	    }
+	    if (outFile != null) {
+		System.exit(BatchRunner.save(outFile, restored) ? 0 : 1);
+	    }
+	    size = restored.getSize();
+	} else if (autosaveName != null && Autosave.exists(autosaveName)) {
+	    try {
+		restored = Autosave.restore(autosaveName, offHeap);
+		size = restored.getSize();
+		System.out.println("Restored generation " + restored.getGeneration() + " from " + autosaveName);
+	    } catch (java.io.IOException ioex) {
+		System.out.println("Could not restore " + autosaveName + ": " + ioex.getMessage());
+		System.exit(1);
+	    }
+	}
+
+	if (size < 1 || threads < 1 || (historyMB != null && historyMB < 0) || rate < 0
+		|| autosaveGenerations < 1 || autosaveSeconds < 0
+		|| (onCycle != null && !onCycle.equals("report") && !onCycle.equals("stop"))) {
+	    showErrorMessage();
+	}
+
+	if (renderer == null) {
+	    renderer = size > MAX_CANVAS_SIZE ? "viewport" : size > MAX_BUTTONS_SIZE ? "canvas" : "buttons";
+	}
+	if (!renderer.equals("buttons") && !renderer.equals("canvas") && !renderer.equals("viewport")) {
+	    showErrorMessage();
+	}
+
+	LifeEngine engine = Engines.create(engineName, threads);
+	if (engine == null) {
+	    showErrorMessage();
+	}
+
+	final World world = restored != null ? restored : new World(size, offHeap);
+	world.setEngine(engine);
+	if (historyMB == null) {
+	    // An off-heap world is too big for a history on
+	    // the heap to be much use
+	    historyMB = world.isOffHeap() ? 0L : (long) DEFAULT_HISTORY_MB;
+	}
+	world.setHistoryLimit(historyMB << 20);
+	if (rule != null) {
+	    world.setRule(rule);
+	}
+
+	if (recordFile != null) {
+	    if (keyframes < 1) {
+		showErrorMessage();
+	    }
+	    final Recorder recorder = new Recorder(recordFile, keyframes);
+	    try {
+		recorder.start(world);
+	    } catch (java.io.IOException ioex) {
+		System.out.println("Could not record to " + recordFile + ": " + ioex.getMessage());
+		System.exit(1);
+	    }
+	    // Finish the file on the way out
+	    Runtime.getRuntime().addShutdownHook(new Thread() {
+		public void run() {
+		    try {
+			recorder.stop(world);
+		    } catch (java.io.IOException ioex) {
+			System.out.println("Recording failed: " + ioex.getMessage());
+		    }
+		}
+	    });
+	}
+
+	if (autosaveName != null) {
+	    final Autosave autosave = new Autosave(autosaveName, autosaveGenerations, autosaveSeconds);
+	    autosave.start(world);
+	    // Save the latest changes on the way out
+	    Runtime.getRuntime().addShutdownHook(new Thread() {
+		public void run() {
+		    try {
+			autosave.stop(world);
+		    } catch (InterruptedException iex) {
+			// Give up
+		    }
+		}
+	    });
+	}
+
+	final String view = renderer;
+	final double targetRate = rate;
+	final String cycleAction = onCycle;
+	SwingUtilities.invokeLater(new Runnable() {
+	    public void run() {
+		MainFrame mf = new MainFrame(world, view);
+		final SimulationScheduler scheduler = mf.getMainPanel().getScheduler();
+		scheduler.setTargetRate(targetRate);
+		if (cycleAction != null) {
+		    final CycleDetector cycles = new CycleDetector(CycleDetector.DEFAULT_HISTORY);
+		    cycles.setOnCycle(new Runnable() {
+			public void run() {
+			    System.out.println("Cycle of period " + cycles.getPeriod() + " since generation "
+				+ cycles.getCycleStart());
+			    if (cycleAction.equals("stop")) {
+				scheduler.pause();
+			    }
+			}
+		    });
+		    world.getLock().lock();
+		    try {
+			cycles.reset(world);
+			world.addStepListener(cycles);
+		    } finally {
+			world.getLock().unlock();
+		    }
+		}
+	    }
+	});
     }
     
 }
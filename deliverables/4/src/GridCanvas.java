@@ -0,0 +1,114 @@
+import java.awt.*;
+import java.awt.event.*;
+import java.awt.image.*;
+import javax.swing.*;
+
+public class GridCanvas extends JPanel {
+
+	// Same colors as the Cell buttons
+	private static final int ALIVE = Color.RED.getRGB();
+
+	private static final int BEEN_ALIVE = Color.GREEN.getRGB();
+
+	private static final int NEVER_ALIVE = Color.GRAY.getRGB();
+
+	private World _world;
+
+	// Cells which have been alive since they were last
+	// reset, for the green background
+	private BitGrid _beenAlive;
+
+	// One pixel per cell, drawn scaled up by _cellPixels
+	private BufferedImage _image;
+
+	private int[] _pixels;
+
+	private int _cellPixels;
+
+	/**
+	 * Paint the world with each cell cellPixels wide and high.
+	 */
+
+	public GridCanvas(World world, int cellPixels) {
+		super();
+		_world = world;
+		_cellPixels = Math.max(1, cellPixels);
+		int size = world.getSize();
+		_beenAlive = new BitGrid(size, size);
+		_image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+		_pixels = ((DataBufferInt) _image.getRaster().getDataBuffer()).getData();
+		setPreferredSize(new Dimension(size * _cellPixels, size * _cellPixels));
+		addMouseListener(new CanvasMouseListener());
+		refresh();
+	}
+
+	/**
+	 * Forget which cells have been alive, as if the world had just been loaded.
+	 */
+
+	public void resetBeenAlive() {
+		_beenAlive.clear();
+		refresh();
+	}
+
+	/**
+	 * Redraw the image from the world's current generation. The world must be
+	 * locked.
+	 */
+
+	public void refresh() {
+		BitGrid cells = _world.getCells();
+		int size = cells.getCols();
+		int wordsPerRow = cells.getWordsPerRow();
+		for (int j = 0; j < size; j++) {
+			int p = j * size;
+			for (int w = 0; w < wordsPerRow; w++) {
+				long alive = cells.getWord(j, w);
+				long been = _beenAlive.getWord(j, w) | alive;
+				_beenAlive.setWord(j, w, been);
+				int end = Math.min(64, size - (w << 6));
+				for (int b = 0; b < end; b++, p++) {
+					if ((alive >>> b & 1) != 0) {
+						_pixels[p] = ALIVE;
+					} else if ((been >>> b & 1) != 0) {
+						_pixels[p] = BEEN_ALIVE;
+					} else {
+						_pixels[p] = NEVER_ALIVE;
+					}
+				}
+			}
+		}
+		repaint();
+	}
+
+	protected void paintComponent(Graphics g) {
+		super.paintComponent(g);
+		int side = _image.getWidth() * _cellPixels;
+		g.drawImage(_image, 0, 0, side, side, null);
+	}
+
+	class CanvasMouseListener extends MouseAdapter {
+
+		// Clicking a cell toggles it, like clicking a
+		// Cell button.
+
+		public void mousePressed(MouseEvent e) {
+			int row = e.getY() / _cellPixels;
+			int col = e.getX() / _cellPixels;
+			int size = _world.getSize();
+			if (row < 0 || row >= size || col < 0 || col >= size) {
+				return;
+			}
+			_world.getLock().lock();
+			try {
+				boolean alive = !_world.get(row, col);
+				_world.set(row, col, alive);
+				_beenAlive.set(row, col, alive);
+				refresh();
+			} finally {
+				_world.getLock().unlock();
+			}
+		}
+	}
+
+}
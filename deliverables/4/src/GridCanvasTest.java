@@ -0,0 +1,97 @@
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseListener;
+import java.awt.image.BufferedImage;
+
+import org.junit.Test;
+
+public class GridCanvasTest {
+
+	// Paint the canvas into an image the size it asks for, as the screen
+	// would, without needing a screen.
+	private static BufferedImage paint(GridCanvas canvas) {
+		canvas.setSize(canvas.getPreferredSize());
+		BufferedImage image = new BufferedImage(canvas.getWidth(), canvas.getHeight(), BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = image.createGraphics();
+		canvas.paint(g);
+		g.dispose();
+		return image;
+	}
+
+	// The color of cell (row, col), checked the same over every pixel
+	// of it.
+	private static Color cell(BufferedImage image, int cellPixels, int row, int col) {
+		int rgb = image.getRGB(col * cellPixels, row * cellPixels);
+		for (int y = 0; y < cellPixels; y++) {
+			for (int x = 0; x < cellPixels; x++) {
+				assertEquals(rgb, image.getRGB(col * cellPixels + x, row * cellPixels + y));
+			}
+		}
+		return new Color(rgb);
+	}
+
+	private static void press(GridCanvas canvas, int x, int y) {
+		MouseEvent e = new MouseEvent(canvas, MouseEvent.MOUSE_PRESSED, 0, 0, x, y, 1, false);
+		for (MouseListener l : canvas.getMouseListeners()) {
+			l.mousePressed(e);
+		}
+	}
+
+	// Live cells are red, cells which have been alive green and the rest
+	// gray, in the same colors as the Cell buttons, each drawn as a square
+	// of cellPixels pixels.
+
+	@Test
+	public void testColors() {
+		World w = new World(70);
+		w.set(10, 9, true);
+		w.set(10, 10, true);
+		w.set(10, 11, true);
+		w.set(5, 66, true);
+		GridCanvas canvas = new GridCanvas(w, 3);
+		w.step();
+		canvas.refresh();
+		BufferedImage image = paint(canvas);
+		assertEquals(210, image.getWidth());
+
+		assertEquals(Color.RED, cell(image, 3, 9, 10));
+		assertEquals(Color.RED, cell(image, 3, 10, 10));
+		assertEquals(Color.RED, cell(image, 3, 11, 10));
+		assertEquals(Color.GREEN, cell(image, 3, 10, 9));
+		assertEquals(Color.GREEN, cell(image, 3, 10, 11));
+		assertEquals(Color.GREEN, cell(image, 3, 5, 66));
+		assertEquals(Color.GRAY, cell(image, 3, 0, 0));
+		assertEquals(Color.GRAY, cell(image, 3, 69, 69));
+
+		canvas.resetBeenAlive();
+		image = paint(canvas);
+		assertEquals(Color.GRAY, cell(image, 3, 10, 9));
+		assertEquals(Color.GRAY, cell(image, 3, 5, 66));
+		assertEquals(Color.RED, cell(image, 3, 10, 10));
+	}
+
+	// Clicking anywhere in a cell's square toggles that cell and, as with a
+	// Cell button, forgets it was alive. Clicks off the grid do nothing.
+
+	@Test
+	public void testClickToggles() {
+		World w = new World(70);
+		GridCanvas canvas = new GridCanvas(w, 4);
+		press(canvas, 4 * 65 + 3, 4 * 2);
+		assertTrue(w.get(2, 65));
+		assertEquals(1, w.population());
+		assertEquals(Color.RED, cell(paint(canvas), 4, 2, 65));
+
+		press(canvas, 4 * 65, 4 * 2 + 3);
+		assertFalse(w.get(2, 65));
+		assertEquals(Color.GRAY, cell(paint(canvas), 4, 2, 65));
+
+		press(canvas, 4 * 70, 0);
+		press(canvas, 5, 4 * 70 + 1);
+		assertEquals(0, w.population());
+	}
+
+}
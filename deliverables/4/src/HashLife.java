@@ -0,0 +1,508 @@
+public class HashLife {
+
+	// Gosper's HashLife. The plane is a quadtree whose nodes
+	// are hash-consed, so every distinct square pattern is
+	// stored once no matter how often it appears, and each
+	// node remembers its own future. A node of level k is a
+	// 2^k x 2^k square; its result is the centre 2^(k-1)
+	// square advanced 2^min(k-2, _stepLog) generations.
+	// A node keeps its full-speed result, 2^(k-2) ahead,
+	// whatever jumps are asked for, plus one shorter result
+	// tagged with the jump it was for, so step() can mix
+	// jumps of different sizes without forgetting anything.
+	//
+	// Unlike World, the plane is unbounded and does not wrap,
+	// which only works for rules where empty space stays
+	// empty (no birth on 0 neighbors).
+
+	// Collect unreachable nodes once the table gets this big
+	private static final int MAX_NODES = 1 << 22;
+
+	// Coordinates are longs, so the root may not grow past this
+	private static final int MAX_LEVEL = 60;
+
+	static final class Node {
+
+		final int level;
+
+		final Node nw;
+
+		final Node ne;
+
+		final Node sw;
+
+		final Node se;
+
+		final long population;
+
+		final int id;
+
+		final int hash;
+
+		// Next node in the same hash table bucket
+		Node next;
+
+		// The memoized centre after 2^(level-2) generations
+		Node result;
+
+		// The memoized centre after 2^shortLog generations,
+		// for jumps shorter than result's
+		Node shortResult;
+
+		int shortLog;
+
+		// Used by collect() to mark reachable nodes
+		int mark;
+
+		Node(int id, boolean alive) {
+			this.level = 0;
+			this.nw = null;
+			this.ne = null;
+			this.sw = null;
+			this.se = null;
+			this.population = alive ? 1 : 0;
+			this.id = id;
+			this.hash = id;
+		}
+
+		Node(int id, Node nw, Node ne, Node sw, Node se) {
+			this.level = nw.level + 1;
+			this.nw = nw;
+			this.ne = ne;
+			this.sw = sw;
+			this.se = se;
+			this.population = nw.population + ne.population + sw.population + se.population;
+			this.id = id;
+			this.hash = hash(nw, ne, sw, se);
+		}
+	}
+
+	private final Rule _rule;
+
+	private final Node _dead;
+
+	private final Node _alive;
+
+	// Canonical empty node of each level
+	private final Node[] _empty = new Node[MAX_LEVEL + 2];
+
+	private Node[] _table = new Node[1 << 16];
+
+	private int _nodeCount = 0;
+
+	private int _nextId = 2;
+
+	private int _epoch = 0;
+
+	private Node _root;
+
+	private int _stepLog = 0;
+
+	private long _generation = 0;
+
+	public HashLife() {
+		this(Rule.CONWAY);
+	}
+
+	/**
+	 * An empty plane stepped by the given rule. Throws IllegalArgumentException if
+	 * the rule makes cells appear in empty space.
+	 */
+
+	public HashLife(Rule rule) {
+		if (!rule.keepsEmptySpace()) {
+			throw new IllegalArgumentException("HashLife cannot run " + rule + ", which fills empty space");
+		}
+		_rule = rule;
+		_dead = new Node(0, false);
+		_alive = new Node(1, true);
+		_empty[0] = _dead;
+		_root = empty(3);
+	}
+
+	/**
+	 * Build a plane holding the cells of the given world, with its top left
+	 * cell at (0, 0).
+	 */
+
+	public static HashLife fromWorld(World world) {
+		HashLife life = new HashLife(world.getRule());
+		int size = world.getSize();
+		for (int j = 0; j < size; j++) {
+			for (int k = 0; k < size; k++) {
+				if (world.get(j, k)) {
+					life.set(j, k, true);
+				}
+			}
+		}
+		life.setGeneration(world.getGeneration());
+		return life;
+	}
+
+	public Rule getRule() {
+		return _rule;
+	}
+
+	public long getGeneration() {
+		return _generation;
+	}
+
+	public void setGeneration(long generation) {
+		_generation = generation;
+	}
+
+	public long population() {
+		return _root.population;
+	}
+
+	/**
+	 * The live cells, as keys made by SparseLife.key(row, col), in no particular
+	 * order. Throws IllegalStateException if there are too many for an array, or
+	 * any lies outside the range of an int.
+	 */
+
+	public long[] cells() {
+		if (_root.population > Integer.MAX_VALUE - 8) {
+			throw new IllegalStateException("Too many live cells to list: " + _root.population);
+		}
+		long[] cells = new long[(int) _root.population];
+		long half = 1L << (_root.level - 1);
+		cells(_root, -half, -half, cells, 0);
+		return cells;
+	}
+
+	/**
+	 * Put the live cells of n, whose top left cell is (row, col), into cells from
+	 * index count on, returning the index after the last.
+	 */
+
+	private int cells(Node n, long row, long col, long[] cells, int count) {
+		if (n.population == 0) {
+			return count;
+		}
+		if (n.level == 0) {
+			if (row != (int) row || col != (int) col) {
+				throw new IllegalStateException("Live cell too far out to list: (" + row + ", " + col + ")");
+			}
+			cells[count] = SparseLife.key((int) row, (int) col);
+			return count + 1;
+		}
+		long half = 1L << (n.level - 1);
+		count = cells(n.nw, row, col, cells, count);
+		count = cells(n.ne, row, col + half, cells, count);
+		count = cells(n.sw, row + half, col, cells, count);
+		return cells(n.se, row + half, col + half, cells, count);
+	}
+
+	/**
+	 * Number of distinct nodes currently stored.
+	 */
+
+	public int getNodeCount() {
+		return _nodeCount;
+	}
+
+	public boolean get(long row, long col) {
+		long half = 1L << (_root.level - 1);
+		if (row < -half || row >= half || col < -half || col >= half) {
+			return false;
+		}
+		return get(_root, row + half, col + half);
+	}
+
+	private boolean get(Node n, long row, long col) {
+		while (n.level > 0) {
+			if (n.population == 0) {
+				return false;
+			}
+			long half = 1L << (n.level - 1);
+			if (row < half) {
+				n = col < half ? n.nw : n.ne;
+			} else {
+				n = col < half ? n.sw : n.se;
+				row -= half;
+			}
+			if (col >= half) {
+				col -= half;
+			}
+		}
+		return n == _alive;
+	}
+
+	public void set(long row, long col, boolean alive) {
+		while (true) {
+			long half = 1L << (_root.level - 1);
+			if (row >= -half && row < half && col >= -half && col < half) {
+				_root = set(_root, row + half, col + half, alive);
+				return;
+			}
+			_root = expand(_root);
+		}
+	}
+
+	private Node set(Node n, long row, long col, boolean alive) {
+		if (n.level == 0) {
+			return alive ? _alive : _dead;
+		}
+		long half = 1L << (n.level - 1);
+		if (row < half) {
+			if (col < half) {
+				return node(set(n.nw, row, col, alive), n.ne, n.sw, n.se);
+			}
+			return node(n.nw, set(n.ne, row, col - half, alive), n.sw, n.se);
+		}
+		if (col < half) {
+			return node(n.nw, n.ne, set(n.sw, row - half, col, alive), n.se);
+		}
+		return node(n.nw, n.ne, n.sw, set(n.se, row - half, col - half, alive));
+	}
+
+	/**
+	 * Advance the plane by 2^k generations in a single step.
+	 */
+
+	public void jump(int k) {
+		if (k < 0 || k > MAX_LEVEL - 3) {
+			throw new IllegalArgumentException("Cannot jump 2^" + k + " generations");
+		}
+		if (_nodeCount > MAX_NODES) {
+			collect();
+		}
+		_stepLog = k;
+
+		// The root must be big enough to take a step of
+		// 2^k, and the pattern must sit in its centre
+		// quarter. One more level then leaves room for
+		// anything the pattern can reach in 2^k steps.
+		while (_root.level < k + 2 || !centred(_root)) {
+			_root = expand(_root);
+		}
+		_root = successor(expand(_root));
+		_generation += 1L << k;
+	}
+
+	/**
+	 * Advance the plane by any number of generations, as a sequence of jumps.
+	 */
+
+	public void step(long generations) {
+		for (int k = 0; generations != 0; k++, generations >>>= 1) {
+			if ((generations & 1) != 0) {
+				jump(k);
+			}
+		}
+	}
+
+	private static int hash(Node nw, Node ne, Node sw, Node se) {
+		int h = nw.id;
+		h = h * 0x9E3779B1 + ne.id;
+		h = h * 0x9E3779B1 + sw.id;
+		h = h * 0x9E3779B1 + se.id;
+		return h ^ (h >>> 15);
+	}
+
+	/**
+	 * The one node with these four children.
+	 */
+
+	private Node node(Node nw, Node ne, Node sw, Node se) {
+		int h = hash(nw, ne, sw, se);
+		int i = h & (_table.length - 1);
+		for (Node n = _table[i]; n != null; n = n.next) {
+			if (n.nw == nw && n.ne == ne && n.sw == sw && n.se == se) {
+				return n;
+			}
+		}
+		Node n = new Node(_nextId++, nw, ne, sw, se);
+		insert(n);
+		return n;
+	}
+
+	private void insert(Node n) {
+		if (_nodeCount >= _table.length) {
+			resize(_table.length * 2);
+		}
+		int i = n.hash & (_table.length - 1);
+		n.next = _table[i];
+		_table[i] = n;
+		_nodeCount++;
+	}
+
+	private void resize(int capacity) {
+		Node[] old = _table;
+		_table = new Node[capacity];
+		for (int j = 0; j < old.length; j++) {
+			Node n = old[j];
+			while (n != null) {
+				Node next = n.next;
+				int i = n.hash & (capacity - 1);
+				n.next = _table[i];
+				_table[i] = n;
+				n = next;
+			}
+		}
+	}
+
+	private Node empty(int level) {
+		if (_empty[level] == null) {
+			Node e = empty(level - 1);
+			_empty[level] = node(e, e, e, e);
+		}
+		return _empty[level];
+	}
+
+	/**
+	 * A node one level up with n in its centre.
+	 */
+
+	private Node expand(Node n) {
+		if (n.level >= MAX_LEVEL) {
+			throw new IllegalStateException("Pattern is too large");
+		}
+		Node e = empty(n.level - 1);
+		return node(node(e, e, e, n.nw), node(e, e, n.ne, e), node(e, n.sw, e, e), node(n.se, e, e, e));
+	}
+
+	/**
+	 * Whether all live cells of n are in its centre quarter.
+	 */
+
+	private boolean centred(Node n) {
+		return n.nw.population == n.nw.se.population && n.ne.population == n.ne.sw.population
+				&& n.sw.population == n.sw.ne.population && n.se.population == n.se.nw.population;
+	}
+
+	private Node centre(Node n) {
+		return node(n.nw.se, n.ne.sw, n.sw.ne, n.se.nw);
+	}
+
+	/**
+	 * The centre of a level k node, advanced 2^min(k-2, _stepLog) generations.
+	 */
+
+	private Node successor(Node n) {
+		boolean full = _stepLog >= n.level - 2;
+		if (full) {
+			if (n.result != null) {
+				return n.result;
+			}
+		} else if (n.shortResult != null && n.shortLog == _stepLog) {
+			return n.shortResult;
+		}
+		Node result;
+		if (n.population == 0) {
+			result = n.nw;
+		} else if (n.level == 2) {
+			result = stepLeaf(n);
+		} else {
+			// Nine overlapping squares one level down,
+			// covering the node.
+			Node n00 = n.nw;
+			Node n01 = node(n.nw.ne, n.ne.nw, n.nw.se, n.ne.sw);
+			Node n02 = n.ne;
+			Node n10 = node(n.nw.sw, n.nw.se, n.sw.nw, n.sw.ne);
+			Node n11 = node(n.nw.se, n.ne.sw, n.sw.ne, n.se.nw);
+			Node n12 = node(n.ne.sw, n.ne.se, n.se.nw, n.se.ne);
+			Node n20 = n.sw;
+			Node n21 = node(n.sw.ne, n.se.nw, n.sw.se, n.se.sw);
+			Node n22 = n.se;
+
+			// At full speed, the first half of the
+			// jump happens here. Otherwise, all of it
+			// happens in the second round below.
+			if (full) {
+				n00 = successor(n00);
+				n01 = successor(n01);
+				n02 = successor(n02);
+				n10 = successor(n10);
+				n11 = successor(n11);
+				n12 = successor(n12);
+				n20 = successor(n20);
+				n21 = successor(n21);
+				n22 = successor(n22);
+			} else {
+				n00 = centre(n00);
+				n01 = centre(n01);
+				n02 = centre(n02);
+				n10 = centre(n10);
+				n11 = centre(n11);
+				n12 = centre(n12);
+				n20 = centre(n20);
+				n21 = centre(n21);
+				n22 = centre(n22);
+			}
+
+			result = node(successor(node(n00, n01, n10, n11)), successor(node(n01, n02, n11, n12)),
+					successor(node(n10, n11, n20, n21)), successor(node(n11, n12, n21, n22)));
+		}
+		if (full) {
+			n.result = result;
+		} else {
+			n.shortResult = result;
+			n.shortLog = _stepLog;
+		}
+		return result;
+	}
+
+	/**
+	 * The centre 2x2 of a 4x4 node after one generation.
+	 */
+
+	private Node stepLeaf(Node n) {
+		// Bit (4 * row + col) is cell (row, col)
+		int bits = 0;
+		for (int j = 0; j < 4; j++) {
+			for (int k = 0; k < 4; k++) {
+				Node quad = j < 2 ? (k < 2 ? n.nw : n.ne) : (k < 2 ? n.sw : n.se);
+				Node cell = (j & 1) == 0 ? ((k & 1) == 0 ? quad.nw : quad.ne) : ((k & 1) == 0 ? quad.sw : quad.se);
+				if (cell == _alive) {
+					bits |= 1 << (4 * j + k);
+				}
+			}
+		}
+		return node(nextCell(bits, 1, 1), nextCell(bits, 1, 2), nextCell(bits, 2, 1), nextCell(bits, 2, 2));
+	}
+
+	private Node nextCell(int bits, int row, int col) {
+		int numNeighbors = 0;
+		for (int j = row - 1; j <= row + 1; j++) {
+			for (int k = col - 1; k <= col + 1; k++) {
+				if ((j != row || k != col) && (bits >>> (4 * j + k) & 1) != 0) {
+					numNeighbors++;
+				}
+			}
+		}
+		boolean alive = (bits >>> (4 * row + col) & 1) != 0;
+		return _rule.next(alive, numNeighbors) ? _alive : _dead;
+	}
+
+	/**
+	 * Drop every node which is not part of the current root or an empty node,
+	 * along with all memoized results.
+	 */
+
+	private void collect() {
+		_epoch++;
+		_table = new Node[_table.length];
+		_nodeCount = 0;
+		keep(_root);
+		for (int j = 1; j < _empty.length && _empty[j] != null; j++) {
+			keep(_empty[j]);
+		}
+	}
+
+	private void keep(Node n) {
+		if (n.level == 0 || n.mark == _epoch) {
+			return;
+		}
+		n.mark = _epoch;
+		keep(n.nw);
+		keep(n.ne);
+		keep(n.sw);
+		keep(n.se);
+		n.result = null;
+		n.shortResult = null;
+		insert(n);
+	}
+
+}
@@ -0,0 +1,334 @@
+import java.util.*;
+
+public class History implements ChangeVisitor {
+
+	// Each generation is stored as the words which changed
+	// during the step to it, XORed with their old values.
+	// Applying the same XORs again goes back. Edits made
+	// between steps are kept the same way, so undoing a step
+	// also undoes any edits made after it.
+	//
+	// Everything held counts against the limit: the steps
+	// kept, the edits since the last one, and the evicted
+	// deltas kept to record into again. Once the history is
+	// full, each step reuses the arrays of the oldest, so
+	// stepping does not allocate.
+
+	static final class Delta {
+
+		int[] rows = new int[16];
+
+		int[] words = new int[16];
+
+		long[] flips = new long[16];
+
+		int count;
+
+		void add(int row, int word, long bits) {
+			if (count > 0 && rows[count - 1] == row && words[count - 1] == word) {
+				// Edits to one word in a row, as when
+				// setting cells one by one
+				flips[count - 1] ^= bits;
+				return;
+			}
+			if (count == rows.length) {
+				int capacity = count * 2;
+				rows = Arrays.copyOf(rows, capacity);
+				words = Arrays.copyOf(words, capacity);
+				flips = Arrays.copyOf(flips, capacity);
+			}
+			rows[count] = row;
+			words[count] = word;
+			flips[count] = bits;
+			count++;
+		}
+
+		/**
+		 * Flip the recorded cells back, reporting each changed word to the visitor.
+		 */
+
+		void revert(BitGrid cells, ChangeVisitor visitor) {
+			for (int j = count - 1; j >= 0; j--) {
+				cells.setWord(rows[j], words[j], cells.getWord(rows[j], words[j]) ^ flips[j]);
+				visitor.changed(rows[j], words[j], flips[j]);
+			}
+		}
+
+		long bytes() {
+			// Three arrays, plus object headers
+			return 16L * rows.length + 64;
+		}
+	}
+
+	/**
+	 * Evicted deltas of one kind, kept to be recorded into again.
+	 */
+
+	static final class Pool {
+
+		private final Delta[] _deltas = new Delta[MAX_SPARE];
+
+		private int _count;
+
+		// Memory held by the deltas in the pool
+		private long _bytes;
+
+		boolean isEmpty() {
+			return _count == 0;
+		}
+
+		boolean isFull() {
+			return _count == _deltas.length;
+		}
+
+		long bytes() {
+			return _bytes;
+		}
+
+		void put(Delta d) {
+			d.count = 0;
+			_deltas[_count++] = d;
+			_bytes += d.bytes();
+		}
+
+		/**
+		 * Take out the delta with the most room, so steps rarely have to grow one.
+		 */
+
+		Delta take() {
+			int best = 0;
+			for (int j = 1; j < _count; j++) {
+				if (_deltas[j].rows.length > _deltas[best].rows.length) {
+					best = j;
+				}
+			}
+			return remove(best);
+		}
+
+		/**
+		 * Take out the delta with the least room, to be dropped.
+		 */
+
+		Delta takeSmallest() {
+			int best = 0;
+			for (int j = 1; j < _count; j++) {
+				if (_deltas[j].rows.length < _deltas[best].rows.length) {
+					best = j;
+				}
+			}
+			return remove(best);
+		}
+
+		private Delta remove(int j) {
+			Delta d = _deltas[j];
+			_deltas[j] = _deltas[--_count];
+			_deltas[_count] = null;
+			_bytes -= d.bytes();
+			return d;
+		}
+	}
+
+	private static final int MAX_SPARE = 8;
+
+	private final long _maxBytes;
+
+	// The steps which can be undone, oldest first, in ring
+	// buffers: the generation each started from, the edits
+	// made before it and the step itself.
+	private long[] _generations = new long[64];
+
+	private Delta[] _edited = new Delta[64];
+
+	private Delta[] _stepped = new Delta[64];
+
+	private int _first = 0;
+
+	private int _count = 0;
+
+	// Memory held by the deltas in the ring
+	private long _bytes = 0;
+
+	// Edits made since the last step
+	private Delta _edits = new Delta();
+
+	// The step being recorded
+	private Delta _step;
+
+	// Edits and steps differ too much in size to share
+	// arrays well
+	private final Pool _spareEdits = new Pool();
+
+	private final Pool _spareSteps = new Pool();
+
+	/**
+	 * Keep as many generations as fit in roughly maxBytes, dropping the oldest
+	 * first.
+	 */
+
+	public History(long maxBytes) {
+		_maxBytes = maxBytes;
+	}
+
+	public long getMaxBytes() {
+		return _maxBytes;
+	}
+
+	/**
+	 * Approximate memory held by the history.
+	 */
+
+	public long getBytes() {
+		long bytes = _bytes + _edits.bytes() + _spareEdits.bytes() + _spareSteps.bytes();
+		return _step != null ? bytes + _step.bytes() : bytes;
+	}
+
+	/**
+	 * Number of steps which can be undone.
+	 */
+
+	public int size() {
+		return _count;
+	}
+
+	public void clear() {
+		while (_count > 0) {
+			evictOldest();
+		}
+		_edits.count = 0;
+		trim();
+	}
+
+	/**
+	 * Record cells flipped by an edit rather than a step.
+	 */
+
+	public void recordEdit(int row, int word, long flips) {
+		int capacity = _edits.rows.length;
+		_edits.add(row, word, flips);
+		if (_edits.rows.length != capacity && getBytes() > _maxBytes) {
+			trim();
+			if (getBytes() > _maxBytes) {
+				// Too many edits to undo, even with every step
+				// gone. Nothing is left to undo to before
+				// them, so they need not be kept.
+				_edits = new Delta();
+			}
+		}
+	}
+
+	public void beginStep() {
+		if (_spareSteps.isEmpty() && _count > 0
+				&& getBytes() + _stepped[index(_count - 1)].bytes() > _maxBytes) {
+			// Full: record into the oldest step's arrays
+			evictOldest();
+		}
+		_step = _spareSteps.isEmpty() ? new Delta() : _spareSteps.take();
+	}
+
+	public void changed(int row, int word, long flips) {
+		_step.add(row, word, flips);
+	}
+
+	/**
+	 * Finish recording the step which started from the given generation.
+	 */
+
+	public void endStep(long generation) {
+		if (_count == _generations.length) {
+			grow();
+		}
+		int j = index(_count++);
+		_generations[j] = generation;
+		_edited[j] = _edits;
+		_stepped[j] = _step;
+		_bytes += _edits.bytes() + _step.bytes();
+		_step = null;
+		_edits = _spareEdits.isEmpty() ? new Delta() : _spareEdits.take();
+		trim();
+	}
+
+	private int index(int j) {
+		return (_first + j) & (_generations.length - 1);
+	}
+
+	private void grow() {
+		int n = _generations.length;
+		long[] generations = new long[2 * n];
+		Delta[] edited = new Delta[2 * n];
+		Delta[] stepped = new Delta[2 * n];
+		for (int j = 0; j < _count; j++) {
+			generations[j] = _generations[index(j)];
+			edited[j] = _edited[index(j)];
+			stepped[j] = _stepped[index(j)];
+		}
+		_generations = generations;
+		_edited = edited;
+		_stepped = stepped;
+		_first = 0;
+	}
+
+	/**
+	 * Drop spare deltas, then the oldest steps, until the history is within its
+	 * limit.
+	 */
+
+	private void trim() {
+		while (getBytes() > _maxBytes) {
+			if (!_spareSteps.isEmpty()) {
+				_spareSteps.takeSmallest();
+			} else if (!_spareEdits.isEmpty()) {
+				_spareEdits.takeSmallest();
+			} else if (_count > 0) {
+				evictOldest();
+			} else {
+				return;
+			}
+		}
+	}
+
+	private void evictOldest() {
+		int j = index(0);
+		_bytes -= _edited[j].bytes() + _stepped[j].bytes();
+		recycle(_spareEdits, _edited[j]);
+		recycle(_spareSteps, _stepped[j]);
+		_edited[j] = null;
+		_stepped[j] = null;
+		_first = index(1);
+		_count--;
+	}
+
+	private void recycle(Pool pool, Delta d) {
+		if (!pool.isFull()) {
+			pool.put(d);
+		}
+	}
+
+	/**
+	 * Put cells back the way they were before the last step still in the
+	 * history, discarding edits made since. Each changed word is reported to the
+	 * visitor. Returns the generation the cells are now at, or -1 if there is
+	 * nothing to undo.
+	 */
+
+	public long undo(BitGrid cells, ChangeVisitor visitor) {
+		if (_count == 0) {
+			return -1;
+		}
+		int j = index(--_count);
+		Delta edits = _edited[j];
+		Delta step = _stepped[j];
+		_edited[j] = null;
+		_stepped[j] = null;
+		_bytes -= edits.bytes() + step.bytes();
+		_edits.revert(cells, visitor);
+		step.revert(cells, visitor);
+
+		// The edits made before that step are now
+		// the latest ones.
+		recycle(_spareEdits, _edits);
+		recycle(_spareSteps, step);
+		_edits = edits;
+		return _generations[j];
+	}
+
+}
@@ -0,0 +1,28 @@
+public interface LifeEngine {
+
+	/**
+	 * Compute the given region of the generation after src under the given rule,
+	 * and write it into dst. The region is rows fromRow (inclusive) to toRow (exclusive), and words
+	 * fromWord (inclusive) to toWord (exclusive) of each of those rows. Only src
+	 * is read, so disjoint regions may be computed independently. The grid wraps
+	 * around at the edges, so the world is a torus.
+	 * Implementations must be safe to call from several threads at once, as long
+	 * as the regions do not overlap.
+	 * Returns whether any cell in the region changed.
+	 */
+
+	boolean step(Rule rule, BitGrid src, BitGrid dst, int fromRow, int toRow, int fromWord, int toWord);
+
+	/**
+	 * Compute count regions, each given by four consecutive entries of regions
+	 * (fromRow, toRow, fromWord, toWord), and record whether each one changed.
+	 */
+
+	default void stepRegions(Rule rule, BitGrid src, BitGrid dst, int[] regions, boolean[] changed, int count) {
+		for (int j = 0; j < count; j++) {
+			int r = 4 * j;
+			changed[j] = step(rule, src, dst, regions[r], regions[r + 1], regions[r + 2], regions[r + 3]);
+		}
+	}
+
+}
@@ -18,6 +18,11 @@ public class LoadButton extends JButton {
 		public void actionPerformed(ActionEvent e) {
 			String fileName = "backup.txt";
 			ArrayList<String> info = FileAccess.loadFile(fileName);
+			if (info == null) {
+				JOptionPane.showMessageDialog((Component) e.getSource(), "COULD NOT READ FILE " + fileName,
+						"BROUGHT TO YOU BY BILL LABOON", JOptionPane.WARNING_MESSAGE);
+				return;
+			}
 			_m.load(info);
 		}
 	}
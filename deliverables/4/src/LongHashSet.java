@@ -0,0 +1,184 @@
+import java.util.*;
+
+public class LongHashSet {
+
+	// A set of longs with no boxing: open addressing with
+	// linear probing in two parallel arrays. Each key also
+	// carries a positive count, so the same table can count
+	// how often each key was added; a slot is empty exactly
+	// when its count is 0, so every long can be a key.
+	//
+	// Slots are picked by Fibonacci hashing (multiply, keep
+	// the top bits), which spreads out the packed
+	// coordinates SparseLife uses, and the table is kept at
+	// most half full.
+
+	private static final int MIN_CAPACITY = 16;
+
+	private long[] _keys;
+
+	private int[] _counts;
+
+	private int _shift;
+
+	private int _size = 0;
+
+	public LongHashSet() {
+		this(MIN_CAPACITY);
+	}
+
+	/**
+	 * An empty set with room for about expected keys before it has to grow.
+	 */
+
+	public LongHashSet(int expected) {
+		allocate(capacityFor(expected));
+	}
+
+	private static int capacityFor(int keys) {
+		int capacity = MIN_CAPACITY;
+		while (capacity < 2L * keys && capacity < 1 << 30) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	private void allocate(int capacity) {
+		_keys = new long[capacity];
+		_counts = new int[capacity];
+		_shift = 64 - Integer.numberOfTrailingZeros(capacity);
+	}
+
+	private int slot(long key) {
+		return (int) ((key * 0x9E3779B97F4A7C15L) >>> _shift);
+	}
+
+	public int size() {
+		return _size;
+	}
+
+	public boolean contains(long key) {
+		return count(key) != 0;
+	}
+
+	/**
+	 * How many times the key has been added, or 0 if it is not in the set.
+	 */
+
+	public int count(long key) {
+		int mask = _keys.length - 1;
+		for (int i = slot(key); _counts[i] != 0; i = (i + 1) & mask) {
+			if (_keys[i] == key) {
+				return _counts[i];
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Add the key. Returns whether it was not already in the set.
+	 */
+
+	public boolean add(long key) {
+		return add(key, 1) == 1;
+	}
+
+	/**
+	 * Add n (which must be positive) to the key's count, adding the key if it is
+	 * not in the set. Returns the new count.
+	 */
+
+	public int add(long key, int n) {
+		int mask = _keys.length - 1;
+		int i = slot(key);
+		while (_counts[i] != 0) {
+			if (_keys[i] == key) {
+				return _counts[i] += n;
+			}
+			i = (i + 1) & mask;
+		}
+		_keys[i] = key;
+		_counts[i] = n;
+		if (++_size > _keys.length >>> 1) {
+			rehash(_keys.length << 1);
+		}
+		return n;
+	}
+
+	/**
+	 * Remove the key. Returns whether it was in the set.
+	 */
+
+	public boolean remove(long key) {
+		int mask = _keys.length - 1;
+		int i = slot(key);
+		while (_keys[i] != key || _counts[i] == 0) {
+			if (_counts[i] == 0) {
+				return false;
+			}
+			i = (i + 1) & mask;
+		}
+
+		// Move later keys of the same run back into the
+		// gap, so no search stops short at it.
+		int gap = i;
+		for (int j = (i + 1) & mask; _counts[j] != 0; j = (j + 1) & mask) {
+			int home = slot(_keys[j]);
+			if (((j - home) & mask) >= ((j - gap) & mask)) {
+				_keys[gap] = _keys[j];
+				_counts[gap] = _counts[j];
+				gap = j;
+			}
+		}
+		_counts[gap] = 0;
+		_size--;
+		return true;
+	}
+
+	/**
+	 * Empty the set. The table shrinks again if it had grown far bigger than the
+	 * set was, so clearing costs about as much as the set held.
+	 */
+
+	public void clear() {
+		if (_keys.length > MIN_CAPACITY && _size < _keys.length >>> 3) {
+			allocate(capacityFor(_size));
+		} else {
+			Arrays.fill(_counts, 0);
+		}
+		_size = 0;
+	}
+
+	private void rehash(int capacity) {
+		long[] keys = _keys;
+		int[] counts = _counts;
+		allocate(capacity);
+		int mask = capacity - 1;
+		for (int j = 0; j < keys.length; j++) {
+			if (counts[j] != 0) {
+				int i = slot(keys[j]);
+				while (_counts[i] != 0) {
+					i = (i + 1) & mask;
+				}
+				_keys[i] = keys[j];
+				_counts[i] = counts[j];
+			}
+		}
+	}
+
+	// For walking the table: for (int i = 0; i < capacity(); i++),
+	// skipping slots whose count is 0.
+
+	public int capacity() {
+		return _keys.length;
+	}
+
+	public long keyAt(int slot) {
+		return _keys[slot];
+	}
+
+	public int countAt(int slot) {
+		return _counts[slot];
+	}
+
+}
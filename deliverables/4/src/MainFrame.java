@@ -13,6 +13,23 @@ public class MainFrame {
 	private ButtonPanel _buttonPanel;
 
 	public MainFrame(int size) {
+		this(new World(size));
+	}
+
+	public MainFrame(World world) {
+		this(world, false);
+	}
+
+	public MainFrame(World world, boolean useCanvas) {
+		this(world, useCanvas ? "canvas" : "buttons");
+	}
+
+	/**
+	 * Show the world with the given MainPanel renderer. The viewport grows and
+	 * shrinks with the window.
+	 */
+
+	public MainFrame(World world, String renderer) {
 
 		_frame.setSize(WIDTH, HEIGHT);
 		// Close program when window is closed
@@ -20,14 +37,18 @@ public class MainFrame {
 
 		// Add Main Panel and Button Panel
 
-		_mainPanel = new MainPanel(size);
+		_mainPanel = new MainPanel(world, renderer);
 
 		_buttonPanel = new ButtonPanel(_mainPanel);
 
-		_frame.add(_mainPanel, BorderLayout.NORTH);
+		_frame.add(_mainPanel, renderer.equals("viewport") ? BorderLayout.CENTER : BorderLayout.NORTH);
 		_frame.add(_buttonPanel, BorderLayout.SOUTH);
 
 		_frame.setVisible(true);
 	}
 
+	public MainPanel getMainPanel() {
+		return _mainPanel;
+	}
+
 }
@@ -4,198 +4,157 @@ import java.util.*;
 
 public class MainPanel extends JPanel {
 
-	// Current configuration
+	// Room left for the world in the MainFrame
+	private static final int VIEW_WIDTH = 780;
+
+	private static final int VIEW_HEIGHT = 520;
+
+	// The model. The Cells or the canvas only display it.
+	private World _world;
+
+	// Buttons showing the current configuration, or null
+	// when drawing on a canvas instead
 	private Cell[][] _cells;
 
-	// Backup configuration
-	private Cell[][] _backupCells;
+	private GridCanvas _canvas;
 
-	private int _size = 0;
+	// Or a pan and zoom view of part of the world, for
+	// worlds too big to draw whole
+	private ViewportCanvas _viewport;
 
-	private int _maxCount = 10000000;
+	// Cells flipped by steps since the Cell buttons were
+	// last updated, reported by the world as it steps. A
+	// frame may cover several generations, so the flips are
+	// XORed together: a cell which flipped back is left
+	// alone. Only used with the Cell buttons.
+	private BitGrid _flips;
 
-	public int _r = 1000;
+	// The world's edit count when the Cell buttons were last
+	// brought fully up to date. Any other change to the
+	// world means updating every button again.
+	private long _shownEditCount;
 
-	private boolean _running = false;
+	private int _size = 0;
+
+	// Runs generations continuously, off the event thread
+	private SimulationScheduler _scheduler;
 
 	public int getCellsSize() {
 		return _size;
 	}
 
-	public void setCells(Cell[][] cells) {
-		_cells = cells;
-	}
-
-	public Cell[][] getCells() {
-		return _cells;
+	public World getWorld() {
+		return _world;
 	}
 
-	private int convertToInt(int x) {
-		int c = 0;
-		String padding = "0";
-		while (c < _r) {
-			String l = new String("0");
-			padding += l;
-			c++;
-		}
-
-		String n = padding + String.valueOf(x);
-		int q = Integer.parseInt(n);
-		return q;
+	public SimulationScheduler getScheduler() {
+		return _scheduler;
 	}
 
-	private int getNumNeighbors(int x, int y) {
-		int size = _size;
-		int leftX = (x - 1) % size;
-		int rightX = (x + 1) % size;
-		int upY = (y - 1) % size;
-		int downY = (y + 1) % size;
-
-		if (leftX == -1) {
-			leftX = size - 1;
-		}
-		if (rightX == -1) {
-			rightX = size - 1;
-		}
-		if (upY == -1) {
-			upY = size - 1;
-		}
-		if (downY == -1) {
-			downY = size - 1;
-		}
-
-		int numNeighbors = 0;
-
-		if (_cells[leftX][upY].getAlive()) {
-			numNeighbors++;
-		}
-		if (_cells[leftX][downY].getAlive()) {
-			numNeighbors++;
-		}
-		if (_cells[leftX][y].getAlive()) {
-			numNeighbors++;
-		}
-		if (_cells[rightX][upY].getAlive()) {
-			numNeighbors++;
-		}
-		if (_cells[rightX][downY].getAlive()) {
-			numNeighbors++;
-		}
-		if (_cells[rightX][y].getAlive()) {
-			numNeighbors++;
-		}
-		if (_cells[x][upY].getAlive()) {
-			numNeighbors++;
-		}
-		if (_cells[x][downY].getAlive()) {
-			numNeighbors++;
-		}
-
-		return convertToInt(numNeighbors);
-
-	}
+	/**
+	 * Replace the displayed cells, and take the model's state from them.
+	 */
 
-	private boolean iterateCell(int x, int y) {
-		boolean toReturn = false;
-		boolean alive = _cells[x][y].getAlive();
-		int numNeighbors = getNumNeighbors(x, y);
-		if (alive) {
-			if (numNeighbors < 2 || numNeighbors > 3) {
-				toReturn = false;
-			} else {
-				toReturn = true;
+	public void setCells(Cell[][] cells) {
+		_world.getLock().lock();
+		try {
+			if (_canvas == null && _viewport == null) {
+				_cells = cells;
 			}
-		} else {
-			if (numNeighbors == 3) {
-				toReturn = true;
-			} else {
-				toReturn = false;
+			for (int j = 0; j < _size; j++) {
+				for (int k = 0; k < _size; k++) {
+					_world.set(j, k, cells[j][k].getAlive());
+				}
 			}
+			if (_canvas != null) {
+				_canvas.refresh();
+			}
+			if (_viewport != null) {
+				_viewport.refresh();
+			}
+		} finally {
+			_world.getLock().unlock();
 		}
-		return toReturn;
-
 	}
 
-	private void displayIteration(boolean[][] nextIter) {
-		System.out.println("\tDisplaying...");
-		for (int j = 0; j < _size; j++) {
-			for (int k = 0; k < _size; k++) {
-				_cells[j][k].setAlive(nextIter[j][k]);
-			}
-		}
-		setVisible(true);
+	public Cell[][] getCells() {
+		return _cells;
 	}
 
 	/**
-	 * For each of the cells, calculate what their state will be for the next
-	 * iteration.
+	 * Show the model's current generation on the Cells, canvas or viewport. The
+	 * world must be locked.
 	 */
 
-	private void calculateNextIteration() {
-		System.out.println("\tCalculating..");
-		boolean[][] nextIter = new boolean[_size][_size];
-		for (int j = 0; j < _size; j++) {
-			for (int k = 0; k < _size; k++) {
-				nextIter[j][k] = iterateCell(j, k);
+	private void displayIteration() {
+		if (_canvas != null) {
+			_canvas.refresh();
+			return;
+		}
+		if (_viewport != null) {
+			_viewport.refresh();
+			return;
+		}
+		if (_world.getEditCount() != _shownEditCount) {
+			showAll();
+		} else {
+			// Each setAlive() invalidates its button, so
+			// only touch the ones which changed.
+			int wordsPerRow = _flips.getWordsPerRow();
+			for (int j = 0; j < _size; j++) {
+				for (int w = 0; w < wordsPerRow; w++) {
+					long flips = _flips.getWord(j, w);
+					if (flips == 0) {
+						continue;
+					}
+					_flips.setWord(j, w, 0);
+					for (; flips != 0; flips &= flips - 1) {
+						int k = (w << 6) + Long.numberOfTrailingZeros(flips);
+						_cells[j][k].setAlive(_world.get(j, k));
+					}
+				}
 			}
 		}
-
-		displayIteration(nextIter);
+		setVisible(true);
 	}
 
 	/**
-	 * Make a copy of the current cells and put the copy in the backup cells.
+	 * Update every Cell button from the world. The world must be locked.
 	 */
 
-	public void backup() {
-		_backupCells = new Cell[_size][_size];
+	private void showAll() {
 		for (int j = 0; j < _size; j++) {
 			for (int k = 0; k < _size; k++) {
-				_backupCells[j][k] = new Cell();
-				_backupCells[j][k].setAlive(_cells[j][k].getAlive());
+				_cells[j][k].setAlive(_world.get(j, k));
 			}
 		}
+		_flips.clear();
+		_shownEditCount = _world.getEditCount();
 	}
 
 	/**
 	 * This is for debug use. It will display the state of cells in a convenient
-	 * format. First it will display backup cells and then the current cells. Backup
-	 * cells are what you revert to when you press Undo.
+	 * format. First it will display the previous generation and then the current
+	 * cells. The previous generation is what you revert to when you press Undo.
 	 */
 
 	public void debugPrint() {
-		System.out.println("Backup cells");
-
+		_world.getLock().lock();
 		try {
-			for (int j = 0; j < _size; j++) {
-				for (int k = 0; k < _size; k++) {
+			System.out.println("Previous cells:");
 
-					if (_backupCells[j][k].getAlive()) {
-						System.out.print("X");
-					} else {
-						System.out.print(".");
-					}
-				}
-				System.out.println("");
+			BitGrid previous = _world.getPreviousCells();
+			if (previous != null) {
+				System.out.print(previous.toString());
+			} else {
+				System.out.println("Nothin' yet");
 			}
 
 			System.out.println("Current cells:");
-
-			for (int j = 0; j < _size; j++) {
-				for (int k = 0; k < _size; k++) {
-
-					if (_cells[j][k].getAlive()) {
-						System.out.print("X");
-					} else {
-						System.out.print(".");
-					}
-				}
-				System.out.println("");
-			}
-		} catch (Exception ex) {
-			System.out.println("Nothin' yet");
+			System.out.print(_world.toString());
+		} finally {
+			_world.getLock().unlock();
 		}
-
 	}
 
 	/**
@@ -204,56 +163,62 @@ public class MainPanel extends JPanel {
 
 	public String toString() {
 
-		// Loop through all of the cells, and
-		// if they are alive, add an "X" to
-		// the String, if dead, a ".".
+		// One line per row, with an "X" for
+		// each live cell and a "." for each
+		// dead one.
 
-		String toWrite = "";
+		_world.getLock().lock();
+		try {
+			return _world.toString();
+		} finally {
+			_world.getLock().unlock();
+		}
+	}
 
-		for (int j = 0; j < _size; j++) {
-			for (int k = 0; k < _size; k++) {
-				if (_cells[j][k].getAlive()) {
-					toWrite += _cells[j][k].toString();
-				} else {
-					toWrite += _cells[j][k].toString();
-				}
+	/**
+	 * Write the world to a file in the same format as toString(). Returns whether
+	 * it worked.
+	 */
 
-			}
-			toWrite += "\n";
+	public boolean save(String fileName) {
+		_world.getLock().lock();
+		try {
+			return FileAccess.saveFile(fileName, _world);
+		} finally {
+			_world.getLock().unlock();
+		}
+	}
+
+	/**
+	 * Like save(), but write to a new temporary file whose name starts with
+	 * backupFile first, and only then replace fileToWrite with it.
+	 */
+
+	public boolean safeSave(String fileToWrite, String backupFile) {
+		_world.getLock().lock();
+		try {
+			return FileAccess.safeSaveFile(fileToWrite, backupFile, _world);
+		} finally {
+			_world.getLock().unlock();
 		}
-		return toWrite;
 	}
 
 	/**
-	 * Run one iteration of the Game of Life
+	 * Run one iteration of the Game of Life. If the system is running
+	 * continuously, this pauses it first.
 	 */
 
 	public void run() {
-		backup();
-		calculateNextIteration();
+		_scheduler.step();
 	}
 
 	/**
-	 * Run the system continuously.
+	 * Run the system continuously, on the scheduler's worker thread. This returns
+	 * straight away.
 	 */
 
 	public void runContinuous() {
-		_running = true;
-		while (_running) {
-			System.out.println("Running...");
-			int origR = _r;
-			try {
-				Thread.sleep(20);
-			} catch (InterruptedException iex) {
-			}
-			for (int j = 0; j < _maxCount; j++) {
-				_r += (j % _size) % _maxCount;
-				_r += _maxCount;
-			}
-			_r = origR;
-			backup();
-			calculateNextIteration();
-		}
+		_scheduler.resume();
 	}
 
 	/**
@@ -261,7 +226,7 @@ public class MainPanel extends JPanel {
 	 */
 
 	public void stop() {
-		_running = false;
+		_scheduler.pause();
 	}
 
 	/**
@@ -291,11 +256,18 @@ public class MainPanel extends JPanel {
 	}
 
 	/**
-	 * Revert back to the previous iteration, which we have saved in _backupCells.
+	 * Revert back to the previous iteration, which the world still holds in its
+	 * back buffer.
 	 */
 
 	public void undo() {
-		displayIteration(convertToBoolean(_backupCells));
+		_world.getLock().lock();
+		try {
+			_world.undo();
+			displayIteration();
+		} finally {
+			_world.getLock().unlock();
+		}
 	}
 
 	/**
@@ -303,10 +275,26 @@ public class MainPanel extends JPanel {
 	 */
 
 	public void clear() {
-		for (int j = 0; j < _size; j++) {
-			for (int k = 0; k < _size; k++) {
-				_cells[j][k].reset();
+		_world.getLock().lock();
+		try {
+			_world.clear();
+			if (_canvas != null) {
+				_canvas.resetBeenAlive();
+				return;
+			}
+			if (_viewport != null) {
+				_viewport.refresh();
+				return;
+			}
+			for (int j = 0; j < _size; j++) {
+				for (int k = 0; k < _size; k++) {
+					_cells[j][k].reset();
+				}
 			}
+			_flips.clear();
+			_shownEditCount = _world.getEditCount();
+		} finally {
+			_world.getLock().unlock();
 		}
 		// Need to call setVisible() since
 		// we did not do a displayIteration()
@@ -319,51 +307,109 @@ public class MainPanel extends JPanel {
 	 */
 
 	public void load(ArrayList<String> lines) {
-		boolean[][] loaded = new boolean[_size][_size];
-
-		for (int j = 0; j < _size; j++) {
-			String l = lines.get(j);
-			for (int k = 0; k < _size; k++) {
-
-				// Reset the "been alive" count
-				_cells[j][k].resetBeenAlive();
-
-				// For each line, get each character.
-				// If it's a '.', the cell stays
-				// dead. Otherwise, the cell is alive.
-				// We could specifically check for
-				// an 'X' for alive and throw an
-				// error if we get an unexpected char.
-				if (l.charAt(k) == '.') {
-					_cells[j][k].setAlive(false);
-					loaded[j][k] = false;
-				} else {
-					_cells[j][k].setAlive(true);
-					loaded[j][k] = true;
+		_world.getLock().lock();
+		try {
+			_world.load(lines);
+
+			// Reset the "been alive" count
+			if (_canvas != null) {
+				_canvas.resetBeenAlive();
+			} else if (_cells != null) {
+				for (int j = 0; j < _size; j++) {
+					for (int k = 0; k < _size; k++) {
+						_cells[j][k].resetBeenAlive();
+					}
 				}
 			}
-		}
 
-		// Now that we have set the Cells to what
-		// we expect, display the iteration.
-		displayIteration(loaded);
-		// debugPrint();
+			// Now that the model holds what we
+			// expect, display the iteration.
+			displayIteration();
+			// debugPrint();
+		} finally {
+			_world.getLock().unlock();
+		}
 
 	}
 
 	public MainPanel(int size) {
+		this(new World(size));
+	}
+
+	public MainPanel(World world) {
+		this(world, false);
+	}
+
+	public MainPanel(World world, boolean useCanvas) {
+		this(world, useCanvas ? "canvas" : "buttons");
+	}
+
+	/**
+	 * Show the world as a grid of Cell buttons ("buttons"), painted whole on a
+	 * canvas, which copes with far bigger worlds ("canvas"), or as a view of
+	 * part of it which can be panned and zoomed, for any size ("viewport").
+	 */
+
+	public MainPanel(World world, String renderer) {
 		super();
-		_size = size;
-		setLayout(new GridLayout(size, size));
-		_cells = new Cell[size][size];
-		for (int j = 0; j < size; j++) {
-			for (int k = 0; k < size; k++) {
-				_cells[j][k] = new Cell();
+		_world = world;
+		_size = world.getSize();
+		_scheduler = new SimulationScheduler(_world, new Runnable() {
+			public void run() {
+				displayIteration();
+			}
+		});
+
+		if (renderer.equals("viewport")) {
+			_viewport = new ViewportCanvas(_world, VIEW_WIDTH, VIEW_HEIGHT);
+			setLayout(new BorderLayout());
+			add(_viewport, BorderLayout.CENTER);
+			return;
+		}
+
+		if (renderer.equals("canvas")) {
+			int cellPixels = Math.max(1, Math.min(VIEW_WIDTH, VIEW_HEIGHT) / _size);
+			_canvas = new GridCanvas(_world, cellPixels);
+			setLayout(new BorderLayout());
+			JScrollPane scroll = new JScrollPane(_canvas);
+			int side = _size * cellPixels;
+			scroll.setPreferredSize(new Dimension(Math.min(VIEW_WIDTH, side + 4), Math.min(VIEW_HEIGHT, side + 4)));
+			add(scroll, BorderLayout.CENTER);
+			return;
+		}
+
+		setLayout(new GridLayout(_size, _size));
+		_cells = new Cell[_size][_size];
+		for (int j = 0; j < _size; j++) {
+			for (int k = 0; k < _size; k++) {
+				_cells[j][k] = new Cell(_world, j, k);
 				this.add(_cells[j][k]);
-				_cells[j][k].setAlive(false);
 			}
 		}
+		_flips = new BitGrid(_size, _size);
+		_world.getLock().lock();
+		try {
+			showAll();
+			_world.addStepListener(new FlipCollector());
+		} finally {
+			_world.getLock().unlock();
+		}
+
+	}
+
+	class FlipCollector implements StepListener, ChangeVisitor {
 
+		// Called with the world locked, on whichever thread
+		// stepped it, so _flips is only touched under the
+		// world's lock.
+
+		public void stepped(World world) {
+			world.forEachChange(this);
+		}
+
+		public void changed(int row, int word, long flips) {
+			_flips.setWord(row, word, _flips.getWord(row, word) ^ flips);
+		}
 	}
 
 }
@@ -0,0 +1,127 @@
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class MainPanelTest {
+
+	// A Cell button which counts how often it is updated.
+
+	static class CountingCell extends Cell {
+
+		int updates;
+
+		CountingCell(World world, int row, int col) {
+			super(world, row, col);
+		}
+
+		public void setAlive(boolean a) {
+			updates++;
+			super.setAlive(a);
+		}
+
+	}
+
+	// Give a panel over a 20 x 20 world counting buttons holding a blinker
+	// across row 8 and a block, and step it once, which updates every
+	// button since the world was just edited.
+	private static CountingCell[][] shown(MainPanel panel) {
+		World w = panel.getWorld();
+		CountingCell[][] cells = new CountingCell[20][20];
+		for (int j = 0; j < 20; j++) {
+			for (int k = 0; k < 20; k++) {
+				cells[j][k] = new CountingCell(w, j, k);
+			}
+		}
+		for (int k = 6; k <= 8; k++) {
+			cells[8][k].setAlive(true);
+		}
+		cells[2][2].setAlive(true);
+		cells[2][3].setAlive(true);
+		cells[3][2].setAlive(true);
+		cells[3][3].setAlive(true);
+		panel.setCells(cells);
+		updates(cells);
+		panel.run();
+		check(w, cells);
+		return cells;
+	}
+
+	private static void check(World w, CountingCell[][] cells) {
+		for (int j = 0; j < 20; j++) {
+			for (int k = 0; k < 20; k++) {
+				assertEquals(w.get(j, k), cells[j][k].getAlive());
+			}
+		}
+	}
+
+	// Total updates of all the buttons, counting again from zero
+	private static int updates(CountingCell[][] cells) {
+		int n = 0;
+		for (int j = 0; j < 20; j++) {
+			for (int k = 0; k < 20; k++) {
+				n += cells[j][k].updates;
+				cells[j][k].updates = 0;
+			}
+		}
+		return n;
+	}
+
+	// After a step, only the buttons of the cells which flipped are
+	// updated.
+
+	@Test
+	public void testOnlyFlipsUpdated() {
+		MainPanel panel = new MainPanel(20);
+		CountingCell[][] cells = shown(panel);
+		assertEquals(400, updates(cells));
+		panel.run();
+		check(panel.getWorld(), cells);
+		assertEquals(1, cells[7][7].updates);
+		assertEquals(1, cells[9][7].updates);
+		assertEquals(1, cells[8][6].updates);
+		assertEquals(1, cells[8][8].updates);
+		assertEquals(4, updates(cells));
+	}
+
+	// Flips from several generations shown in one frame are combined, so a
+	// cell which flipped and flipped back is not updated at all.
+
+	@Test
+	public void testFlipsBackSkipped() {
+		MainPanel panel = new MainPanel(20);
+		CountingCell[][] cells = shown(panel);
+		updates(cells);
+		World w = panel.getWorld();
+		w.getLock().lock();
+		try {
+			w.step(3);
+		} finally {
+			w.getLock().unlock();
+		}
+		panel.run();
+		assertEquals(5, w.getGeneration());
+		check(w, cells);
+		assertEquals(0, updates(cells));
+	}
+
+	// Any change other than a step, such as an edit, updates every button
+	// once.
+
+	@Test
+	public void testEditShowsAll() {
+		MainPanel panel = new MainPanel(20);
+		CountingCell[][] cells = shown(panel);
+		updates(cells);
+		World w = panel.getWorld();
+		w.getLock().lock();
+		try {
+			w.set(15, 15, true);
+		} finally {
+			w.getLock().unlock();
+		}
+		panel.run();
+		check(w, cells);
+		assertEquals(400, updates(cells));
+	}
+
+}
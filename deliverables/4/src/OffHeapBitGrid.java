@@ -0,0 +1,127 @@
+import java.nio.*;
+
+public class OffHeapBitGrid extends BitGrid {
+
+	// A BitGrid whose words live outside the Java heap, in
+	// direct buffers, so a grid can be far bigger than the
+	// heap and the garbage collector never looks at it.
+	// Direct memory has its own limit, which defaults to the
+	// heap size; raise it with -XX:MaxDirectMemorySize.
+	//
+	// One buffer can hold at most 2 GB, so the words are
+	// split across buffers of 2^CHUNK_SHIFT words each.
+
+	private static final int CHUNK_SHIFT = 27;
+
+	private final int _chunkShift;
+
+	private final int _chunkMask;
+
+	private final ByteBuffer[] _chunks;
+
+	private final int _wordCount;
+
+	public OffHeapBitGrid(int rows, int cols) {
+		this(rows, cols, CHUNK_SHIFT);
+	}
+
+	/**
+	 * A grid split into chunks of 2^chunkShift words, so tests can cross chunk
+	 * boundaries without allocating gigabytes.
+	 */
+
+	OffHeapBitGrid(int rows, int cols, int chunkShift) {
+		super(rows, cols, false);
+		long words = (long) rows * getWordsPerRow();
+		if (words > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Grid is too big: " + rows + " x " + cols);
+		}
+		_wordCount = (int) words;
+		_chunkShift = chunkShift;
+		_chunkMask = (1 << chunkShift) - 1;
+		_chunks = new ByteBuffer[(int) ((words + _chunkMask) >>> chunkShift)];
+		for (int j = 0; j < _chunks.length; j++) {
+			int n = Math.min(_chunkMask + 1, _wordCount - (j << chunkShift));
+			// Direct buffers start out zeroed
+			_chunks[j] = ByteBuffer.allocateDirect(n << 3).order(ByteOrder.nativeOrder());
+		}
+	}
+
+	public BitGrid blank() {
+		return new OffHeapBitGrid(getRows(), getCols(), _chunkShift);
+	}
+
+	long[] words() {
+		return null;
+	}
+
+	public boolean get(int row, int col) {
+		return (getWord(row, col >>> 6) & (1L << col)) != 0;
+	}
+
+	public void set(int row, int col, boolean alive) {
+		long word = getWord(row, col >>> 6);
+		setWord(row, col >>> 6, alive ? word | 1L << col : word & ~(1L << col));
+	}
+
+	public void fill(int row, int fromCol, int toCol) {
+		while (fromCol < toCol) {
+			int w = fromCol >>> 6;
+			int end = Math.min(toCol, (w + 1) << 6);
+			int n = end - fromCol;
+			long mask = n == 64 ? -1L : ((1L << n) - 1) << fromCol;
+			setWord(row, w, getWord(row, w) | mask);
+			fromCol = end;
+		}
+	}
+
+	public long getWord(int row, int word) {
+		int i = row * getWordsPerRow() + word;
+		return _chunks[i >>> _chunkShift].getLong((i & _chunkMask) << 3);
+	}
+
+	public void setWord(int row, int word, long bits) {
+		int i = row * getWordsPerRow() + word;
+		_chunks[i >>> _chunkShift].putLong((i & _chunkMask) << 3, bits);
+	}
+
+	public void writeRow(int row, LongBuffer out) {
+		for (int w = 0; w < getWordsPerRow(); w++) {
+			out.put(getWord(row, w));
+		}
+	}
+
+	public void readRow(int row, LongBuffer in) {
+		int last = getWordsPerRow() - 1;
+		for (int w = 0; w < last; w++) {
+			setWord(row, w, in.get());
+		}
+		setWord(row, last, in.get() & getLastWordMask());
+	}
+
+	public void clear() {
+		for (int i = 0; i < _wordCount; i++) {
+			_chunks[i >>> _chunkShift].putLong((i & _chunkMask) << 3, 0L);
+		}
+	}
+
+	public void copyFrom(BitGrid other) {
+		if (other.getRows() != getRows() || other.getCols() != getCols()) {
+			throw new IllegalArgumentException("Grid shapes differ");
+		}
+		for (int row = 0; row < getRows(); row++) {
+			for (int word = 0; word < getWordsPerRow(); word++) {
+				setWord(row, word, other.getWord(row, word));
+			}
+		}
+	}
+
+	public long population() {
+		long count = 0;
+		for (int i = 0; i < _wordCount; i++) {
+			count += Long.bitCount(_chunks[i >>> _chunkShift].getLong((i & _chunkMask) << 3));
+		}
+		return count;
+	}
+
+}
@@ -0,0 +1,144 @@
+import java.util.concurrent.*;
+
+public class ParallelEngine implements LifeEngine {
+
+	// Bands smaller than this are not worth
+	// handing to another thread.
+	private static final int MIN_BAND_ROWS = 16;
+
+	private final LifeEngine _engine;
+
+	private final ForkJoinPool _pool;
+
+	private final int _threads;
+
+	/**
+	 * Run the given engine over row bands on a pool of the given number of
+	 * threads. The engine must be safe to call from several threads at once.
+	 */
+
+	public ParallelEngine(LifeEngine engine, int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("Thread count must be positive");
+		}
+		_engine = engine;
+		_threads = threads;
+		_pool = new ForkJoinPool(threads);
+	}
+
+	public int getThreads() {
+		return _threads;
+	}
+
+	public LifeEngine getEngine() {
+		return _engine;
+	}
+
+	public boolean step(Rule rule, BitGrid src, BitGrid dst, int fromRow, int toRow, int fromWord, int toWord) {
+		int rows = toRow - fromRow;
+		if (_threads == 1 || rows < 2 * MIN_BAND_ROWS) {
+			return _engine.step(rule, src, dst, fromRow, toRow, fromWord, toWord);
+		}
+
+		// A few bands per thread, so a thread
+		// which finishes early can steal work.
+		int bandRows = Math.max(MIN_BAND_ROWS, rows / (_threads * 4));
+		return _pool.invoke(new Band(rule, src, dst, fromRow, toRow, fromWord, toWord, bandRows));
+	}
+
+	public void stepRegions(Rule rule, BitGrid src, BitGrid dst, int[] regions, boolean[] changed, int count) {
+		if (_threads == 1 || count < 2) {
+			_engine.stepRegions(rule, src, dst, regions, changed, count);
+			return;
+		}
+		int batch = Math.max(1, count / (_threads * 4));
+		_pool.invoke(new Regions(rule, src, dst, regions, changed, 0, count, batch));
+	}
+
+	class Band extends RecursiveTask<Boolean> {
+
+		private final Rule _rule;
+
+		private final BitGrid _src;
+
+		private final BitGrid _dst;
+
+		private final int _fromRow;
+
+		private final int _toRow;
+
+		private final int _fromWord;
+
+		private final int _toWord;
+
+		private final int _bandRows;
+
+		Band(Rule rule, BitGrid src, BitGrid dst, int fromRow, int toRow, int fromWord, int toWord, int bandRows) {
+			_rule = rule;
+			_src = src;
+			_dst = dst;
+			_fromRow = fromRow;
+			_toRow = toRow;
+			_fromWord = fromWord;
+			_toWord = toWord;
+			_bandRows = bandRows;
+		}
+
+		protected Boolean compute() {
+			if (_toRow - _fromRow <= _bandRows) {
+				return _engine.step(_rule, _src, _dst, _fromRow, _toRow, _fromWord, _toWord);
+			}
+			int mid = (_fromRow + _toRow) >>> 1;
+			Band top = new Band(_rule, _src, _dst, _fromRow, mid, _fromWord, _toWord, _bandRows);
+			Band bottom = new Band(_rule, _src, _dst, mid, _toRow, _fromWord, _toWord, _bandRows);
+			top.fork();
+			boolean changed = bottom.compute();
+			return top.join() || changed;
+		}
+	}
+
+	class Regions extends RecursiveAction {
+
+		private final Rule _rule;
+
+		private final BitGrid _src;
+
+		private final BitGrid _dst;
+
+		private final int[] _regions;
+
+		private final boolean[] _changed;
+
+		private final int _from;
+
+		private final int _to;
+
+		private final int _batch;
+
+		Regions(Rule rule, BitGrid src, BitGrid dst, int[] regions, boolean[] changed, int from, int to, int batch) {
+			_rule = rule;
+			_src = src;
+			_dst = dst;
+			_regions = regions;
+			_changed = changed;
+			_from = from;
+			_to = to;
+			_batch = batch;
+		}
+
+		protected void compute() {
+			if (_to - _from <= _batch) {
+				for (int j = _from; j < _to; j++) {
+					int r = 4 * j;
+					_changed[j] = _engine.step(_rule, _src, _dst, _regions[r], _regions[r + 1], _regions[r + 2],
+							_regions[r + 3]);
+				}
+			} else {
+				int mid = (_from + _to) >>> 1;
+				invokeAll(new Regions(_rule, _src, _dst, _regions, _changed, _from, mid, _batch),
+						new Regions(_rule, _src, _dst, _regions, _changed, mid, _to, _batch));
+			}
+		}
+	}
+
+}
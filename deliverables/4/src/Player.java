@@ -0,0 +1,264 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+
+public class Player {
+
+	// Plays back a file written by Recorder. Opening it
+	// reads just the frame headers, to find where each
+	// keyframe is; seeking to a generation then starts from
+	// the last keyframe at or before it and applies the
+	// deltas after it, unless carrying on from the current
+	// generation is closer.
+	//
+	// If the recorded world went back in time, the frames
+	// from then on replace the ones they overlap.
+
+	private final FileChannel _channel;
+
+	private final int _rows;
+
+	private final int _cols;
+
+	// Generation and file offset of each keyframe, in order
+	private long[] _keyGenerations = new long[16];
+
+	private long[] _keyOffsets = new long[16];
+
+	private int _keyCount = 0;
+
+	private long _lastGeneration;
+
+	// End of the last whole frame
+	private long _end;
+
+	private final World _world;
+
+	// Where the next frame after the world's generation
+	// starts, or -1 if the world does not hold a recorded
+	// generation yet
+	private long _position = -1;
+
+	// Frames are read whole into this
+	private byte[] _payload = new byte[1 << 16];
+
+	/**
+	 * Open a recording and index its keyframes.
+	 */
+
+	public Player(String fileName) throws IOException {
+		_channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+		try {
+			CountingInput in = input(0);
+			byte[] magic = new byte[RecordingFile.MAGIC.length];
+			for (int j = 0; j < magic.length; j++) {
+				magic[j] = (byte) in.read();
+			}
+			if (!Arrays.equals(magic, RecordingFile.MAGIC)) {
+				throw new IOException("Not a recording: " + fileName);
+			}
+			_rows = RecordingFile.readInt(in);
+			_cols = RecordingFile.readInt(in);
+			RecordingFile.readLong(in);
+			if (_rows != _cols || _rows < 1) {
+				throw new IOException("Recording is not of a square world: " + _rows + " x " + _cols);
+			}
+			index(in);
+		} catch (IOException ioex) {
+			_channel.close();
+			throw ioex;
+		}
+		if (_keyCount == 0) {
+			_channel.close();
+			throw new IOException("Recording has no keyframe: " + fileName);
+		}
+		_world = new World(_rows);
+	}
+
+	private CountingInput input(long position) throws IOException {
+		_channel.position(position);
+		return new CountingInput(new BufferedInputStream(Channels.newInputStream(_channel), 1 << 16), position);
+	}
+
+	private void index(CountingInput in) throws IOException {
+		_end = in.position;
+		while (true) {
+			long start = in.position;
+			int type = in.read();
+			if (type < 0) {
+				return;
+			}
+			long generation;
+			long length;
+			try {
+				generation = RecordingFile.readVarint(in);
+				length = RecordingFile.readVarint(in);
+			} catch (EOFException eofex) {
+				return;
+			}
+			if (in.skip(length) < length) {
+				// Cut short
+				return;
+			}
+			if (type == RecordingFile.KEYFRAME) {
+				// A keyframe going back, as after Undo, starts
+				// a new timeline from there: seeking must not
+				// land on the old keyframes it replaces.
+				while (_keyCount > 0 && _keyGenerations[_keyCount - 1] >= generation) {
+					_keyCount--;
+				}
+				if (_keyCount == _keyOffsets.length) {
+					_keyOffsets = Arrays.copyOf(_keyOffsets, 2 * _keyCount);
+					_keyGenerations = Arrays.copyOf(_keyGenerations, 2 * _keyCount);
+				}
+				_keyOffsets[_keyCount] = start;
+				_keyGenerations[_keyCount] = generation;
+				_keyCount++;
+			} else if (type != RecordingFile.DELTA) {
+				throw new IOException("Bad frame in recording");
+			}
+			_lastGeneration = generation;
+			_end = in.position;
+		}
+	}
+
+	public int getSize() {
+		return _rows;
+	}
+
+	public long getFirstGeneration() {
+		return _keyGenerations[0];
+	}
+
+	public long getLastGeneration() {
+		return _lastGeneration;
+	}
+
+	public int getKeyframeCount() {
+		return _keyCount;
+	}
+
+	/**
+	 * The world as it was at the given generation. The world belongs to the
+	 * player and changes on the next seek; copy() it to keep it or run it on.
+	 */
+
+	public World seek(long generation) throws IOException {
+		if (generation < getFirstGeneration() || generation > _lastGeneration) {
+			throw new IOException("Generation " + generation + " was not recorded (" + getFirstGeneration()
+					+ " to " + _lastGeneration + ")");
+		}
+		// Last keyframe at or before the generation
+		int key = 0;
+		for (int lo = 0, hi = _keyCount - 1; lo <= hi;) {
+			int mid = (lo + hi) >>> 1;
+			if (_keyGenerations[mid] <= generation) {
+				key = mid;
+				lo = mid + 1;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		long from = _keyOffsets[key];
+		if (_position >= 0 && _position > from && _world.getGeneration() <= generation) {
+			// Carrying on is closer than the keyframe
+			from = _position;
+		}
+
+		BitGrid cells = _world.getCells();
+		CountingInput in = input(from);
+		byte[] payload = _payload;
+		while (in.position < _end) {
+			long start = in.position;
+			int type = in.read();
+			long frameGeneration = RecordingFile.readVarint(in);
+			long length = RecordingFile.readVarint(in);
+			if (frameGeneration > generation) {
+				_position = start;
+				break;
+			}
+			if (payload.length < length) {
+				payload = new byte[(int) Math.max(length, 2L * payload.length)];
+				_payload = payload;
+			}
+			readFully(in, payload, (int) length);
+			ByteBuffer frame = ByteBuffer.wrap(payload, 0, (int) length);
+			if (type == RecordingFile.KEYFRAME) {
+				byte[] rule = new byte[(int) RecordingFile.getVarint(frame)];
+				frame.get(rule);
+				try {
+					_world.setRule(Rule.parse(new String(rule, StandardCharsets.US_ASCII)));
+				} catch (IllegalArgumentException iaex) {
+					throw new IOException("Recording has a bad rule: " + iaex.getMessage());
+				}
+				cells.clear();
+			}
+			RecordingFile.flipRuns(frame, cells);
+			_world.setGeneration(frameGeneration);
+			_position = in.position;
+		}
+		_world.invalidate();
+		return _world;
+	}
+
+	private static void readFully(InputStream in, byte[] b, int length) throws IOException {
+		for (int n = 0; n < length;) {
+			int r = in.read(b, n, length - n);
+			if (r < 0) {
+				throw new EOFException();
+			}
+			n += r;
+		}
+	}
+
+	public void close() throws IOException {
+		_channel.close();
+	}
+
+	static class CountingInput extends FilterInputStream {
+
+		// Offset in the file of the next byte
+		long position;
+
+		CountingInput(InputStream in, long position) {
+			super(in);
+			this.position = position;
+		}
+
+		public int read() throws IOException {
+			int b = in.read();
+			if (b >= 0) {
+				position++;
+			}
+			return b;
+		}
+
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = in.read(b, off, len);
+			if (n > 0) {
+				position += n;
+			}
+			return n;
+		}
+
+		public long skip(long n) throws IOException {
+			long skipped = 0;
+			while (skipped < n) {
+				long s = in.skip(n - skipped);
+				if (s <= 0) {
+					if (in.read() < 0) {
+						break;
+					}
+					s = 1;
+				}
+				skipped += s;
+			}
+			position += skipped;
+			return skipped;
+		}
+	}
+
+}
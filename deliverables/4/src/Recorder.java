@@ -0,0 +1,175 @@
+import java.io.*;
+import java.nio.charset.*;
+import java.util.*;
+
+public class Recorder implements StepListener, ChangeVisitor {
+
+	// Records every generation of a running world to a file
+	// (see RecordingFile for the format), for Player to show
+	// again later without computing it. Each step is written
+	// as just the cells it flipped, which World reports from
+	// the tiles it computed, so recording costs about as
+	// much as the changes. A keyframe of the whole world is
+	// written every so many generations, so a player can
+	// seek without reading everything before, and whenever
+	// the world changed other than by a step.
+
+	public static final long DEFAULT_KEYFRAME_INTERVAL = 1000;
+
+	private final String _fileName;
+
+	private final long _keyframeInterval;
+
+	private OutputStream _out;
+
+	private volatile IOException _error;
+
+	// What has been written so far
+	private long _generation;
+
+	private long _editCount;
+
+	private Rule _rule;
+
+	private long _lastKeyframe;
+
+	private RecordingFile.RunWriter _runs;
+
+	// The last step's changes, which come tile by tile,
+	// gathered so they can be written out in order
+	private BitGrid _flips;
+
+	private int[] _changed = new int[256];
+
+	private int _changedCount;
+
+	private final byte[] _header = new byte[1 + 10 + 10];
+
+	public Recorder(String fileName, long keyframeInterval) {
+		_fileName = fileName;
+		_keyframeInterval = Math.max(1, keyframeInterval);
+	}
+
+	/**
+	 * The last error writing the file, or null. Recording stops at the first
+	 * error.
+	 */
+
+	public IOException getError() {
+		return _error;
+	}
+
+	/**
+	 * Start recording the world, beginning with a keyframe of it as it is now.
+	 * The caller must hold the world's lock.
+	 */
+
+	public void start(World world) throws IOException {
+		BitGrid cells = world.getCells();
+		_out = new BufferedOutputStream(new FileOutputStream(_fileName), 1 << 16);
+		_out.write(RecordingFile.MAGIC);
+		RecordingFile.writeInt(_out, cells.getRows());
+		RecordingFile.writeInt(_out, cells.getCols());
+		RecordingFile.writeLong(_out, _keyframeInterval);
+		_runs = new RecordingFile.RunWriter(cells.getCols());
+		_flips = cells.blank();
+		writeKeyframe(world);
+		world.addStepListener(this);
+	}
+
+	/**
+	 * Stop recording and close the file. Takes the world's lock itself.
+	 */
+
+	public void stop(World world) throws IOException {
+		world.getLock().lock();
+		try {
+			world.removeStepListener(this);
+			if (_out != null) {
+				_out.close();
+				_out = null;
+			}
+		} finally {
+			world.getLock().unlock();
+		}
+		if (_error != null) {
+			throw _error;
+		}
+	}
+
+	public void stepped(World world) {
+		if (_out == null || _error != null) {
+			return;
+		}
+		try {
+			long generation = world.getGeneration();
+			if (generation != _generation + 1 || world.getEditCount() != _editCount || world.getRule() != _rule
+					|| generation - _lastKeyframe >= _keyframeInterval) {
+				writeKeyframe(world);
+			} else {
+				writeDelta(world);
+			}
+		} catch (IOException ioex) {
+			_error = ioex;
+		}
+	}
+
+	private void writeKeyframe(World world) throws IOException {
+		BitGrid cells = world.getCells();
+		_runs.reset();
+		for (int row = 0; row < cells.getRows(); row++) {
+			for (int word = 0; word < cells.getWordsPerRow(); word++) {
+				long bits = cells.getWord(row, word);
+				if (bits != 0) {
+					_runs.addWord(row, word, bits);
+				}
+			}
+		}
+		byte[] rule = world.getRule().toString().getBytes(StandardCharsets.US_ASCII);
+		int length = RecordingFile.varintSize(rule.length) + rule.length + _runs.size();
+		writeFrameHeader(RecordingFile.KEYFRAME, world.getGeneration(), length);
+		RecordingFile.writeVarint(_out, rule.length);
+		_out.write(rule);
+		_runs.writeTo(_out);
+		// A crash loses at most the frames since the last keyframe
+		_out.flush();
+
+		_generation = world.getGeneration();
+		_editCount = world.getEditCount();
+		_rule = world.getRule();
+		_lastKeyframe = _generation;
+	}
+
+	private void writeDelta(World world) throws IOException {
+		_changedCount = 0;
+		world.forEachChange(this);
+		Arrays.sort(_changed, 0, _changedCount);
+		int wordsPerRow = _flips.getWordsPerRow();
+		_runs.reset();
+		for (int j = 0; j < _changedCount; j++) {
+			int row = _changed[j] / wordsPerRow;
+			int word = _changed[j] % wordsPerRow;
+			_runs.addWord(row, word, _flips.getWord(row, word));
+			_flips.setWord(row, word, 0);
+		}
+		writeFrameHeader(RecordingFile.DELTA, world.getGeneration(), _runs.size());
+		_runs.writeTo(_out);
+		_generation = world.getGeneration();
+	}
+
+	public void changed(int row, int word, long flips) {
+		if (_changedCount == _changed.length) {
+			_changed = Arrays.copyOf(_changed, 2 * _changedCount);
+		}
+		_changed[_changedCount++] = row * _flips.getWordsPerRow() + word;
+		_flips.setWord(row, word, flips);
+	}
+
+	private void writeFrameHeader(int type, long generation, int length) throws IOException {
+		_header[0] = (byte) type;
+		int n = RecordingFile.put(_header, 1, generation);
+		n = RecordingFile.put(_header, n, length);
+		_out.write(_header, 0, n);
+	}
+
+}
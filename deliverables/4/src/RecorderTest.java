@@ -0,0 +1,86 @@
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RecorderTest {
+
+	@org.junit.Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	// Record a soup, then play every generation back, in order and out of
+	// order, across keyframes and the deltas between them.
+
+	@Test
+	public void testRecordAndPlay() throws Exception {
+		String p = new File(folder.getRoot(), "run.rec").getPath();
+		World w = TestWorlds.soup(100, 1);
+		w.setGeneration(7);
+		Recorder recorder = new Recorder(p, 16);
+		recorder.start(w);
+		ArrayList<String> seen = new ArrayList<String>();
+		seen.add(w.toString());
+		for (int g = 0; g < 50; g++) {
+			w.step();
+			seen.add(w.toString());
+		}
+		recorder.stop(w);
+
+		Player player = new Player(p);
+		try {
+			assertEquals(100, player.getSize());
+			assertEquals(7, player.getFirstGeneration());
+			assertEquals(57, player.getLastGeneration());
+			for (int g = 0; g <= 50; g++) {
+				assertEquals(seen.get(g), player.seek(7 + g).toString());
+			}
+			for (int g : new int[] { 50, 3, 33, 16, 17, 0, 49 }) {
+				World at = player.seek(7 + g);
+				assertEquals(seen.get(g), at.toString());
+				assertEquals(7 + g, at.getGeneration());
+			}
+		} finally {
+			player.close();
+		}
+	}
+
+	// Edits in the middle of a recording are kept, and playback carries on
+	// from the edited world.
+
+	@Test
+	public void testRecordEdits() throws Exception {
+		String p = new File(folder.getRoot(), "edited.rec").getPath();
+		World w = TestWorlds.soup(70, 2);
+		Recorder recorder = new Recorder(p, 1000);
+		recorder.start(w);
+		w.step(10);
+		w.clear();
+		w.set(5, 5, true);
+		w.set(5, 6, true);
+		w.set(5, 7, true);
+		w.step(3);
+		String last = w.toString();
+		recorder.stop(w);
+
+		Player player = new Player(p);
+		try {
+			assertEquals(3, player.getLastGeneration());
+			assertEquals(last, player.seek(3).toString());
+		} finally {
+			player.close();
+		}
+	}
+
+	// A file which is not a recording is refused.
+
+	@Test(expected = java.io.IOException.class)
+	public void testRejectsOtherFiles() throws Exception {
+		String p = new File(folder.getRoot(), "world.txt").getPath();
+		assertTrue(FileAccess.saveFile(p, TestWorlds.soup(10, 3)));
+		new Player(p);
+	}
+
+}
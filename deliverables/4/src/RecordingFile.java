@@ -0,0 +1,262 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.charset.*;
+import java.util.*;
+
+public class RecordingFile {
+
+	// The format shared by Recorder and Player. After a
+	// header,
+	//
+	//     "GOLREC01", int rows, int cols, long keyframe interval
+	//
+	// (little endian), the file is a sequence of frames:
+	//
+	//     byte type, varint generation, varint length, payload
+	//
+	// A keyframe's payload is the rule, as a varint length
+	// and ASCII, then the live cells. A delta's payload is
+	// the cells which flipped in the step to its generation.
+	// Either way the cells are numbered row * cols + col and
+	// written as runs: a varint count, then for each run the
+	// varint gap since the end of the last run and its
+	// varint length. Runs of unchanged cells cost nothing, so
+	// a frame is roughly proportional to the number of
+	// changes.
+	//
+	// Varints are unsigned LEB128: seven bits per byte, low
+	// bits first, the top bit set on every byte but the
+	// last. A frame cut short at the end of the file, as
+	// after a crash, is ignored.
+
+	static final byte[] MAGIC = "GOLREC01".getBytes(StandardCharsets.US_ASCII);
+
+	static final int HEADER_SIZE = 8 + 4 + 4 + 8;
+
+	static final int KEYFRAME = 1;
+
+	static final int DELTA = 2;
+
+	private RecordingFile() {
+	}
+
+	static void writeVarint(OutputStream out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.write((int) (value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write((int) value);
+	}
+
+	/**
+	 * Read a varint, throwing EOFException if the stream ends first.
+	 */
+
+	static long readVarint(InputStream in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = in.read();
+			if (b < 0) {
+				throw new EOFException();
+			}
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Bad varint in recording");
+	}
+
+	static void writeInt(OutputStream out, int value) throws IOException {
+		for (int j = 0; j < 4; j++) {
+			out.write(value >>> (8 * j));
+		}
+	}
+
+	static void writeLong(OutputStream out, long value) throws IOException {
+		for (int j = 0; j < 8; j++) {
+			out.write((int) (value >>> (8 * j)));
+		}
+	}
+
+	static int readInt(InputStream in) throws IOException {
+		int value = 0;
+		for (int j = 0; j < 4; j++) {
+			int b = in.read();
+			if (b < 0) {
+				throw new EOFException();
+			}
+			value |= b << (8 * j);
+		}
+		return value;
+	}
+
+	static long readLong(InputStream in) throws IOException {
+		return (readInt(in) & 0xFFFFFFFFL) | (long) readInt(in) << 32;
+	}
+
+	/**
+	 * Collects runs of set cells, given in increasing order, as (gap, length)
+	 * varint pairs in a byte array.
+	 */
+
+	static class RunWriter {
+
+		private final int _cols;
+
+		private byte[] _bytes = new byte[1 << 12];
+
+		private int _length;
+
+		private long _count;
+
+		// The run being built, not yet written
+		private long _start = -1;
+
+		private long _end;
+
+		// End of the last run written
+		private long _written;
+
+		RunWriter(int cols) {
+			_cols = cols;
+		}
+
+		void reset() {
+			_length = 0;
+			_count = 0;
+			_start = -1;
+			_written = 0;
+		}
+
+		/**
+		 * Add the set bits of a word of the grid. Words must come in order.
+		 */
+
+		void addWord(int row, int word, long bits) {
+			long base = (long) row * _cols + (word << 6);
+			while (bits != 0) {
+				int from = Long.numberOfTrailingZeros(bits);
+				long rest = ~(bits >>> from);
+				int length = rest == 0 ? 64 - from : Long.numberOfTrailingZeros(rest);
+				add(base + from, length);
+				bits = length + from == 64 ? 0 : bits & (-1L << (from + length));
+			}
+		}
+
+		private void add(long start, long length) {
+			if (_start >= 0 && start == _end) {
+				_end += length;
+				return;
+			}
+			flush();
+			_start = start;
+			_end = start + length;
+		}
+
+		private void flush() {
+			if (_start < 0) {
+				return;
+			}
+			if (_bytes.length - _length < 20) {
+				_bytes = Arrays.copyOf(_bytes, 2 * _bytes.length);
+			}
+			_length = put(_bytes, _length, _start - _written);
+			_length = put(_bytes, _length, _end - _start);
+			_written = _end;
+			_count++;
+			_start = -1;
+		}
+
+		/**
+		 * Finish the runs and write them out: their count, then the pairs.
+		 */
+
+		void writeTo(OutputStream out) throws IOException {
+			flush();
+			writeVarint(out, _count);
+			out.write(_bytes, 0, _length);
+		}
+
+		/**
+		 * The size writeTo() will write, after the runs are finished.
+		 */
+
+		int size() {
+			flush();
+			return varintSize(_count) + _length;
+		}
+	}
+
+	/**
+	 * Put a varint into buf, which must have room, at offset. Returns the offset
+	 * after it.
+	 */
+
+	static int put(byte[] buf, int offset, long value) {
+		while ((value & ~0x7FL) != 0) {
+			buf[offset++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buf[offset++] = (byte) value;
+		return offset;
+	}
+
+	static int varintSize(long value) {
+		int n = 1;
+		while ((value & ~0x7FL) != 0) {
+			value >>>= 7;
+			n++;
+		}
+		return n;
+	}
+
+	static long getVarint(ByteBuffer in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			if (!in.hasRemaining()) {
+				throw new IOException("Frame in recording is cut short");
+			}
+			int b = in.get();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Bad varint in recording");
+	}
+
+	/**
+	 * Read runs written by a RunWriter and flip those cells of the grid.
+	 */
+
+	static void flipRuns(ByteBuffer in, BitGrid cells) throws IOException {
+		int cols = cells.getCols();
+		long total = (long) cells.getRows() * cols;
+		long count = getVarint(in);
+		long position = 0;
+		for (long j = 0; j < count; j++) {
+			long start = position + getVarint(in);
+			long end = start + getVarint(in);
+			if (end > total || end < start) {
+				throw new IOException("Recording does not fit its world");
+			}
+			// One row at a time, then a word at a time
+			while (start < end) {
+				int row = (int) (start / cols);
+				int col = (int) (start % cols);
+				int stop = (int) Math.min(cols, col + (end - start));
+				while (col < stop) {
+					int w = col >>> 6;
+					int n = Math.min(stop, (w + 1) << 6) - col;
+					long mask = n == 64 ? -1L : ((1L << n) - 1) << col;
+					cells.setWord(row, w, cells.getWord(row, w) ^ mask);
+					col += n;
+				}
+				start = (long) row * cols + stop;
+			}
+			position = end;
+		}
+	}
+
+}
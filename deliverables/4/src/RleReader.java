@@ -0,0 +1,212 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+public class RleReader {
+
+	// Parses the run-length encoded (RLE) Life format a
+	// buffer at a time, writing cells straight into a grid.
+	// Only the header line is ever held as a String.
+	//
+	// #C comment lines
+	// x = 3, y = 3, rule = B3/S23
+	// bo$2bo$3o!
+	//
+	// In the body, b is a dead cell, o (or any other letter)
+	// a live one and $ the end of a row, each optionally
+	// preceded by a repeat count. ! ends the pattern.
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private int _width = -1;
+
+	private int _height = -1;
+
+	private String _rule;
+
+	// Where the pattern's top left cell goes in the grid
+	private int _top;
+
+	private int _left;
+
+	/**
+	 * Width given in the header, or -1 if there was no header.
+	 */
+
+	public int getWidth() {
+		return _width;
+	}
+
+	public int getHeight() {
+		return _height;
+	}
+
+	/**
+	 * Rule given in the header, or null if there was none.
+	 */
+
+	public String getRule() {
+		return _rule;
+	}
+
+	/**
+	 * Read a pattern into a new size x size grid, with its top left corner at the
+	 * top left of the grid. Cells which do not fit are dropped. If size is 0, the
+	 * grid is made just big enough for the pattern, which then needs a header.
+	 */
+
+	public BitGrid read(ReadableByteChannel in, int size) throws IOException {
+		return read(in, size, -1);
+	}
+
+	/**
+	 * Read a pattern into the middle of a new square grid, at least minSize on a
+	 * side and big enough for margin empty cells on every side of the pattern.
+	 * The pattern needs a header.
+	 */
+
+	public BitGrid readCentred(ReadableByteChannel in, int minSize, int margin) throws IOException {
+		return read(in, minSize, margin);
+	}
+
+	/**
+	 * Read a pattern into the top left corner of a size x size grid if margin is
+	 * negative, or otherwise as readCentred().
+	 */
+
+	private BitGrid read(ReadableByteChannel in, int size, int margin) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+		buf.flip();
+
+		BitGrid grid = null;
+		StringBuilder header = null;
+		boolean lineStart = true;
+		boolean comment = false;
+		int count = 0;
+		int row = 0;
+		int col = 0;
+
+		while (true) {
+			if (!buf.hasRemaining()) {
+				buf.clear();
+				if (in.read(buf) < 0) {
+					break;
+				}
+				buf.flip();
+				continue;
+			}
+			char c = (char) (buf.get() & 0xff);
+
+			if (comment) {
+				comment = c != '\n';
+				lineStart = !comment;
+				continue;
+			}
+			if (header != null) {
+				if (c == '\n') {
+					parseHeader(header.toString());
+					header = null;
+					lineStart = true;
+				} else {
+					header.append(c);
+				}
+				continue;
+			}
+			if (lineStart && grid == null && (c == '#' || c == 'x')) {
+				if (c == '#') {
+					comment = true;
+				} else {
+					header = new StringBuilder("x");
+				}
+				continue;
+			}
+			lineStart = c == '\n';
+
+			if (c >= '0' && c <= '9') {
+				count = count * 10 + (c - '0');
+				continue;
+			}
+			if (Character.isWhitespace(c)) {
+				continue;
+			}
+
+			if (grid == null) {
+				grid = newGrid(size, margin);
+			}
+			int run = count == 0 ? 1 : count;
+			count = 0;
+
+			if (c == '!') {
+				break;
+			} else if (c == '$') {
+				row += run;
+				col = 0;
+			} else if (c == 'b' || c == '.') {
+				col += run;
+			} else if (Character.isLetter(c)) {
+				int gridRow = _top + row;
+				int gridCol = _left + col;
+				if (gridRow < grid.getRows() && gridCol < grid.getCols()) {
+					grid.fill(gridRow, gridCol, Math.min(grid.getCols(), gridCol + run));
+				}
+				col += run;
+			} else {
+				throw new IOException("Unexpected '" + c + "' in RLE pattern");
+			}
+		}
+
+		if (header != null) {
+			parseHeader(header.toString());
+		}
+		if (grid == null) {
+			grid = newGrid(size, margin);
+		}
+		return grid;
+	}
+
+	private BitGrid newGrid(int size, int margin) throws IOException {
+		_top = 0;
+		_left = 0;
+		if (size > 0 && margin < 0) {
+			return new BitGrid(size, size);
+		}
+		if (_width < 0 || _height < 0) {
+			throw new IOException("RLE pattern has no header giving its size");
+		}
+		if (margin < 0) {
+			margin = 0;
+		}
+		size = Math.max(1, Math.max(size, Math.max(_width, _height) + 2 * margin));
+		_top = (size - _height) / 2;
+		_left = (size - _width) / 2;
+		return new BitGrid(size, size);
+	}
+
+	/**
+	 * Parse a line like "x = 3, y = 3, rule = B3/S23".
+	 */
+
+	private void parseHeader(String line) throws IOException {
+		String[] fields = line.split(",");
+		for (int j = 0; j < fields.length; j++) {
+			int eq = fields[j].indexOf('=');
+			if (eq < 0) {
+				throw new IOException("Bad RLE header: " + line);
+			}
+			String name = fields[j].substring(0, eq).trim();
+			String value = fields[j].substring(eq + 1).trim();
+			try {
+				if (name.equals("x")) {
+					_width = Integer.parseInt(value);
+				} else if (name.equals("y")) {
+					_height = Integer.parseInt(value);
+				} else if (name.equals("rule")) {
+					_rule = value;
+				}
+			} catch (NumberFormatException nfex) {
+				throw new IOException("Bad RLE header: " + line);
+			}
+		}
+	}
+
+}
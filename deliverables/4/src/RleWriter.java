@@ -0,0 +1,187 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+
+public class RleWriter {
+
+	// Writes a grid in the run-length encoded (RLE) Life
+	// format, a buffer at a time, finding runs a word at a
+	// time rather than a cell at a time.
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	// Lines of an RLE file should be at most this long
+	private static final int MAX_LINE = 70;
+
+	private final WritableByteChannel _out;
+
+	private final ByteBuffer _buf = ByteBuffer.allocate(BUFFER_SIZE);
+
+	private int _lineLength = 0;
+
+	// Rows ended but not yet written, so runs of empty rows
+	// come out as a single "n$"
+	private int _pendingRows = 0;
+
+	public RleWriter(WritableByteChannel out) {
+		_out = out;
+	}
+
+	/**
+	 * Write the whole grid, with a header naming the given rule.
+	 */
+
+	public void write(BitGrid grid, String rule) throws IOException {
+		int rows = grid.getRows();
+		int cols = grid.getCols();
+		putAscii("x = " + cols + ", y = " + rows + ", rule = " + rule + "\n");
+
+		for (int j = 0; j < rows; j++) {
+			int col = 0;
+			while (col < cols) {
+				boolean alive = grid.get(j, col);
+				int end = runEnd(grid, j, col, alive);
+				if (alive || end < cols) {
+					if (_pendingRows > 0) {
+						putRun(_pendingRows, '$');
+						_pendingRows = 0;
+					}
+					putRun(end - col, alive ? 'o' : 'b');
+				}
+				// A dead run reaching the end of the
+				// row is left out.
+				col = end;
+			}
+			_pendingRows++;
+		}
+		putRun(1, '!');
+		putAscii("\n");
+		flush();
+	}
+
+	/**
+	 * Write the smallest box holding the given live cells, which are keys made by
+	 * SparseLife.key(row, col) in any order, with a header naming the given rule.
+	 */
+
+	public void write(long[] cells, String rule) throws IOException {
+		if (cells.length == 0) {
+			putAscii("x = 0, y = 0, rule = " + rule + "\n");
+			putRun(1, '!');
+			putAscii("\n");
+			flush();
+			return;
+		}
+
+		// Flipping the sign bit of the column makes keys
+		// sort by row, then column.
+		int top = Integer.MAX_VALUE;
+		int left = Integer.MAX_VALUE;
+		int bottom = Integer.MIN_VALUE;
+		int right = Integer.MIN_VALUE;
+		long[] sorted = new long[cells.length];
+		for (int j = 0; j < cells.length; j++) {
+			top = Math.min(top, SparseLife.row(cells[j]));
+			bottom = Math.max(bottom, SparseLife.row(cells[j]));
+			left = Math.min(left, SparseLife.col(cells[j]));
+			right = Math.max(right, SparseLife.col(cells[j]));
+			sorted[j] = cells[j] ^ 0x80000000L;
+		}
+		Arrays.sort(sorted);
+		putAscii("x = " + ((long) right - left + 1) + ", y = " + ((long) bottom - top + 1) + ", rule = " + rule
+				+ "\n");
+
+		int row = top;
+		long col = left;
+		for (int j = 0; j < sorted.length;) {
+			int r = SparseLife.row(sorted[j]);
+			int c = SparseLife.col(sorted[j] ^ 0x80000000L);
+			if (r != row) {
+				putRun(r - row, '$');
+				row = r;
+				col = left;
+			}
+			if (c != col) {
+				putRun((int) (c - col), 'b');
+			}
+			int run = 1;
+			while (j + run < sorted.length && sorted[j + run] == sorted[j] + run
+					&& SparseLife.row(sorted[j + run]) == r) {
+				run++;
+			}
+			putRun(run, 'o');
+			col = (long) c + run;
+			j += run;
+		}
+		putRun(1, '!');
+		putAscii("\n");
+		flush();
+	}
+
+	/**
+	 * The first column at or after col whose state is not alive, or the end of the
+	 * row.
+	 */
+
+	private static int runEnd(BitGrid grid, int row, int col, boolean alive) {
+		int cols = grid.getCols();
+		int w = col >>> 6;
+		long word = grid.getWord(row, w);
+		// Bits which differ from the run's state, from col on
+		long diff = (alive ? ~word : word) & (-1L << col);
+		while (diff == 0) {
+			w++;
+			if (w >= grid.getWordsPerRow()) {
+				return cols;
+			}
+			word = grid.getWord(row, w);
+			diff = alive ? ~word : word;
+		}
+		return Math.min(cols, (w << 6) + Long.numberOfTrailingZeros(diff));
+	}
+
+	private void putRun(int count, char tag) throws IOException {
+		int length = count == 1 ? 1 : 1 + digits(count);
+		if (_lineLength + length > MAX_LINE) {
+			put('\n');
+			_lineLength = 0;
+		}
+		if (count != 1) {
+			putAscii(Integer.toString(count));
+		}
+		put(tag);
+		_lineLength += length;
+	}
+
+	private static int digits(int n) {
+		int d = 1;
+		while (n >= 10) {
+			n /= 10;
+			d++;
+		}
+		return d;
+	}
+
+	private void putAscii(String s) throws IOException {
+		for (int j = 0; j < s.length(); j++) {
+			put(s.charAt(j));
+		}
+	}
+
+	private void put(char c) throws IOException {
+		if (!_buf.hasRemaining()) {
+			flush();
+		}
+		_buf.put((byte) c);
+	}
+
+	private void flush() throws IOException {
+		_buf.flip();
+		while (_buf.hasRemaining()) {
+			_out.write(_buf);
+		}
+		_buf.clear();
+	}
+
+}
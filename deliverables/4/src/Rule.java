@@ -0,0 +1,186 @@
+public class Rule {
+
+	// A Life-like rule: whether a cell is alive in the next
+	// generation depends only on whether it is alive now
+	// and how many of its eight neighbors are. Written as
+	// "B3/S23": a dead cell is born with 3 neighbors, and a
+	// live one survives with 2 or 3.
+	//
+	// The rule is compiled into tables the engines index
+	// instead of branching on the count:
+	//
+	// - a bit table, bit (2 * count + alive), for engines
+	//   which count one cell at a time
+	// - word masks for bit-sliced engines: each count's
+	//   next state is birth[count] ^ (alive & flip[count]),
+	//   so every cell of a word is looked up at once
+
+	public static final Rule CONWAY = parse("B3/S23");
+
+	private static final int CONWAY_BIRTH = 1 << 3;
+
+	private static final int CONWAY_SURVIVE = 1 << 2 | 1 << 3;
+
+	// Bit n set if n neighbors give birth / survival
+	private final int _birth;
+
+	private final int _survive;
+
+	private final int _table;
+
+	private final long[] _birthMasks = new long[9];
+
+	private final long[] _flipMasks = new long[9];
+
+	private Rule(int birth, int survive) {
+		_birth = birth;
+		_survive = survive;
+		int table = 0;
+		for (int n = 0; n <= 8; n++) {
+			table |= (birth >>> n & 1) << (2 * n);
+			table |= (survive >>> n & 1) << (2 * n + 1);
+			_birthMasks[n] = -(long) (birth >>> n & 1);
+			_flipMasks[n] = _birthMasks[n] ^ -(long) (survive >>> n & 1);
+		}
+		_table = table;
+	}
+
+	/**
+	 * Parse a rule in B/S notation ("B36/S23"), or the older S/B notation
+	 * ("23/36", survival first). Throws IllegalArgumentException if it is not a
+	 * Life-like rule.
+	 */
+
+	public static Rule parse(String s) {
+		String[] parts = s.trim().split("/", -1);
+		if (parts.length != 2) {
+			throw new IllegalArgumentException("Not a B/S rule: " + s);
+		}
+		String first = parts[0].trim();
+		String second = parts[1].trim();
+		String b;
+		String t;
+		if (first.length() > 0 && Character.toUpperCase(first.charAt(0)) == 'B') {
+			b = first.substring(1);
+			t = second;
+			if (t.length() == 0 || Character.toUpperCase(t.charAt(0)) != 'S') {
+				throw new IllegalArgumentException("Not a B/S rule: " + s);
+			}
+			t = t.substring(1);
+		} else if (first.length() > 0 && Character.toUpperCase(first.charAt(0)) == 'S') {
+			// S23/B3
+			t = first.substring(1);
+			b = second;
+			if (b.length() == 0 || Character.toUpperCase(b.charAt(0)) != 'B') {
+				throw new IllegalArgumentException("Not a B/S rule: " + s);
+			}
+			b = b.substring(1);
+		} else {
+			// Plain digits are survival first
+			t = first;
+			b = second;
+		}
+		return new Rule(digits(b, s), digits(t, s));
+	}
+
+	private static int digits(String d, String rule) {
+		int bits = 0;
+		for (int j = 0; j < d.length(); j++) {
+			int n = d.charAt(j) - '0';
+			if (n < 0 || n > 8) {
+				throw new IllegalArgumentException("Not a B/S rule: " + rule);
+			}
+			bits |= 1 << n;
+		}
+		return bits;
+	}
+
+	/**
+	 * Bit n is set if a dead cell with n live neighbors is born.
+	 */
+
+	public int getBirth() {
+		return _birth;
+	}
+
+	/**
+	 * Bit n is set if a live cell with n live neighbors survives.
+	 */
+
+	public int getSurvive() {
+		return _survive;
+	}
+
+	/**
+	 * Bit (2 * count + (alive ? 1 : 0)) is the cell's next state.
+	 */
+
+	public int getTable() {
+		return _table;
+	}
+
+	/**
+	 * All ones where a dead cell with n neighbors is born, for each n.
+	 */
+
+	public long[] getBirthMasks() {
+		return _birthMasks;
+	}
+
+	/**
+	 * All ones where being alive changes the outcome for n neighbors, for each n.
+	 */
+
+	public long[] getFlipMasks() {
+		return _flipMasks;
+	}
+
+	public boolean next(boolean alive, int count) {
+		return (_table >>> (2 * count + (alive ? 1 : 0)) & 1) != 0;
+	}
+
+	public boolean isConway() {
+		return _birth == CONWAY_BIRTH && _survive == CONWAY_SURVIVE;
+	}
+
+	/**
+	 * Whether empty space stays empty, which HashLife relies on.
+	 */
+
+	public boolean keepsEmptySpace() {
+		return (_birth & 1) == 0;
+	}
+
+	public boolean equals(Object o) {
+		if (!(o instanceof Rule)) {
+			return false;
+		}
+		Rule r = (Rule) o;
+		return r._birth == _birth && r._survive == _survive;
+	}
+
+	public int hashCode() {
+		return _birth << 9 | _survive;
+	}
+
+	/**
+	 * The rule in B/S notation, such as "B36/S23".
+	 */
+
+	public String toString() {
+		StringBuilder sb = new StringBuilder("B");
+		for (int n = 0; n <= 8; n++) {
+			if ((_birth >>> n & 1) != 0) {
+				sb.append((char) ('0' + n));
+			}
+		}
+		sb.append("/S");
+		for (int n = 0; n <= 8; n++) {
+			if ((_survive >>> n & 1) != 0) {
+				sb.append((char) ('0' + n));
+			}
+		}
+		return sb.toString();
+	}
+
+}
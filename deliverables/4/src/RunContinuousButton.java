@@ -15,12 +15,8 @@ public class RunContinuousButton extends JButton {
 	class RunContinuousButtonListener implements ActionListener {
 
 		public void actionPerformed(ActionEvent e) {
-			(new Thread(new GameRunnable())).start();
-		}
-	}
-
-	class GameRunnable implements Runnable {
-		public void run() {
+			// The MainPanel runs generations on
+			// its own worker thread.
 			_m.runContinuous();
 		}
 	}
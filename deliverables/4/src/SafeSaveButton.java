@@ -16,9 +16,7 @@ public class SafeSaveButton extends JButton {
 	class SafeSaveButtonListener implements ActionListener {
 
 		public void actionPerformed(ActionEvent e) {
-			String toWrite = _m.toString();
-
-			boolean success = FileAccess.safeSaveFile("backup.txt", "temptemp.txt", toWrite);
+			boolean success = _m.safeSave("backup.txt", "temptemp.txt");
 
 			if (!success) {
 				JOptionPane.showMessageDialog((Component) e.getSource(), "COULD NOT WRITE FILE backup.txt",
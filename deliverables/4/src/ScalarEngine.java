@@ -0,0 +1,75 @@
+public class ScalarEngine implements LifeEngine {
+
+	/**
+	 * Count the live neighbors of cell (x, y), wrapping around the edges.
+	 */
+
+	private int getNumNeighbors(BitGrid cells, int x, int y) {
+		int rows = cells.getRows();
+		int cols = cells.getCols();
+		int leftX = x == 0 ? rows - 1 : x - 1;
+		int rightX = x == rows - 1 ? 0 : x + 1;
+		int upY = y == 0 ? cols - 1 : y - 1;
+		int downY = y == cols - 1 ? 0 : y + 1;
+
+		int numNeighbors = 0;
+
+		if (cells.get(leftX, upY)) {
+			numNeighbors++;
+		}
+		if (cells.get(leftX, downY)) {
+			numNeighbors++;
+		}
+		if (cells.get(leftX, y)) {
+			numNeighbors++;
+		}
+		if (cells.get(rightX, upY)) {
+			numNeighbors++;
+		}
+		if (cells.get(rightX, downY)) {
+			numNeighbors++;
+		}
+		if (cells.get(rightX, y)) {
+			numNeighbors++;
+		}
+		if (cells.get(x, upY)) {
+			numNeighbors++;
+		}
+		if (cells.get(x, downY)) {
+			numNeighbors++;
+		}
+
+		return numNeighbors;
+	}
+
+	/**
+	 * Look up the cell's next state in the rule's table, bit (2 * count + alive).
+	 */
+
+	private boolean iterateCell(int table, BitGrid cells, int x, int y) {
+		int numNeighbors = getNumNeighbors(cells, x, y);
+		int alive = cells.get(x, y) ? 1 : 0;
+		return (table >>> (2 * numNeighbors + alive) & 1) != 0;
+	}
+
+	public boolean step(Rule rule, BitGrid src, BitGrid dst, int fromRow, int toRow, int fromWord, int toWord) {
+		int table = rule.getTable();
+		int cols = src.getCols();
+		long changed = 0;
+		for (int j = fromRow; j < toRow; j++) {
+			for (int w = fromWord; w < toWord; w++) {
+				long bits = 0;
+				int end = Math.min(cols, (w + 1) << 6);
+				for (int k = w << 6; k < end; k++) {
+					if (iterateCell(table, src, j, k)) {
+						bits |= 1L << k;
+					}
+				}
+				changed |= bits ^ src.getWord(j, w);
+				dst.setWord(j, w, bits);
+			}
+		}
+		return changed != 0;
+	}
+
+}
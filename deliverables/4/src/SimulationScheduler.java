@@ -0,0 +1,193 @@
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+import javax.swing.*;
+
+public class SimulationScheduler {
+
+	// Generations are computed on a worker thread, as fast
+	// as possible or at a target rate. The display is not
+	// updated per generation: at most one update per frame
+	// is posted to the event dispatch thread, and it shows
+	// whatever generation is current when it runs.
+	//
+	// The world's lock is held while it is stepped and
+	// while it is displayed, so anything else which touches
+	// it from the event thread must take the lock too. The
+	// lock is fair, so the event thread gets its turn even
+	// when the worker is stepping flat out.
+
+	private static final long FRAME_NANOS = 1000000000L / 60;
+
+	private final World _world;
+
+	private final Runnable _display;
+
+	// Generations per second, or 0 for as fast as possible
+	private volatile double _targetRate = 0;
+
+	// Guarded by this
+	private boolean _running = false;
+
+	// Guarded by this
+	private Thread _worker;
+
+	private final AtomicBoolean _framePending = new AtomicBoolean(false);
+
+	private volatile double _measuredRate = 0;
+
+	private final Runnable _frame = new Runnable() {
+		public void run() {
+			_framePending.set(false);
+			_world.getLock().lock();
+			try {
+				_display.run();
+			} finally {
+				_world.getLock().unlock();
+			}
+		}
+	};
+
+	/**
+	 * Step the given world, calling display on the event dispatch thread to show
+	 * it.
+	 */
+
+	public SimulationScheduler(World world, Runnable display) {
+		_world = world;
+		_display = display;
+	}
+
+	public double getTargetRate() {
+		return _targetRate;
+	}
+
+	/**
+	 * Set how many generations to run per second, or 0 to run as fast as
+	 * possible.
+	 */
+
+	public void setTargetRate(double generationsPerSecond) {
+		_targetRate = Math.max(0, generationsPerSecond);
+	}
+
+	/**
+	 * Generations per second over the last frame or so of running.
+	 */
+
+	public double getMeasuredRate() {
+		return _measuredRate;
+	}
+
+	public synchronized boolean isRunning() {
+		return _running;
+	}
+
+	/**
+	 * Start running generations continuously, if not already.
+	 */
+
+	public synchronized void resume() {
+		_running = true;
+		if (_worker == null) {
+			_worker = new Thread(new Worker(), "Simulation");
+			_worker.setDaemon(true);
+			_worker.start();
+		}
+	}
+
+	/**
+	 * Stop running after the current generation. This does not wait for the
+	 * worker, so it is safe to call from the event dispatch thread. The worker
+	 * checks again once it has the world's lock, so nothing which takes the
+	 * lock after this returns sees another generation from it.
+	 */
+
+	public synchronized void pause() {
+		_running = false;
+	}
+
+	/**
+	 * Pause, then run exactly one generation and display it. Call this on the
+	 * event dispatch thread.
+	 */
+
+	public void step() {
+		pause();
+		_world.getLock().lock();
+		try {
+			_world.step();
+			_display.run();
+		} finally {
+			_world.getLock().unlock();
+		}
+	}
+
+	private synchronized boolean keepRunning() {
+		if (!_running) {
+			_worker = null;
+		}
+		return _running;
+	}
+
+	/**
+	 * Post a display update, unless one is already waiting to run.
+	 */
+
+	private void requestFrame() {
+		if (_framePending.compareAndSet(false, true)) {
+			SwingUtilities.invokeLater(_frame);
+		}
+	}
+
+	class Worker implements Runnable {
+
+		public void run() {
+			long lastFrame = System.nanoTime();
+			long framesGenerations = 0;
+			long nextStep = lastFrame;
+
+			while (true) {
+				_world.getLock().lock();
+				try {
+					// Paused while waiting for the lock,
+					// perhaps by step(), which has just
+					// stepped and shown the world itself
+					if (!keepRunning()) {
+						break;
+					}
+					_world.step();
+				} finally {
+					_world.getLock().unlock();
+				}
+				framesGenerations++;
+
+				long now = System.nanoTime();
+				if (now - lastFrame >= FRAME_NANOS) {
+					_measuredRate = framesGenerations * 1e9 / (now - lastFrame);
+					framesGenerations = 0;
+					lastFrame = now;
+					requestFrame();
+				}
+
+				double rate = _targetRate;
+				if (rate > 0) {
+					nextStep += (long) (1e9 / rate);
+					long wait = nextStep - now;
+					if (wait > 0) {
+						LockSupport.parkNanos(wait);
+					} else if (wait < -FRAME_NANOS) {
+						// Too far behind to catch up;
+						// don't try to.
+						nextStep = now;
+					}
+				} else {
+					nextStep = now;
+				}
+			}
+
+			// Make sure the last generation shows
+			requestFrame();
+		}
+	}
+
+}
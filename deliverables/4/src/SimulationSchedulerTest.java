@@ -0,0 +1,134 @@
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+
+import javax.swing.SwingUtilities;
+
+import org.junit.Test;
+
+public class SimulationSchedulerTest {
+
+	// A display which notes the generation of every frame it shows.
+	// It runs with the world's lock held, on the event thread or in
+	// step().
+
+	static class Frames implements Runnable {
+
+		private final World _world;
+
+		private final ArrayList<Long> _shown = new ArrayList<Long>();
+
+		Frames(World world) {
+			_world = world;
+		}
+
+		public synchronized void run() {
+			_shown.add(_world.getGeneration());
+		}
+
+		synchronized long last() {
+			return _shown.get(_shown.size() - 1);
+		}
+
+		synchronized int count() {
+			return _shown.size();
+		}
+
+	}
+
+	private static World blinker() {
+		World w = new World(64);
+		w.set(10, 10, true);
+		w.set(10, 11, true);
+		w.set(10, 12, true);
+		return w;
+	}
+
+	private static long generation(World w) {
+		w.getLock().lock();
+		try {
+			return w.getGeneration();
+		} finally {
+			w.getLock().unlock();
+		}
+	}
+
+	private static void waitForGeneration(World w, long generation) throws Exception {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (generation(w) < generation) {
+			assertTrue("Worker never got to generation " + generation, System.currentTimeMillis() < deadline);
+			Thread.sleep(1);
+		}
+	}
+
+	// Pressing Run while running continuously stops the worker and steps
+	// exactly one more generation, which is the one displayed. Holding
+	// the lock first catches the worker waiting for it, having already
+	// decided to step again.
+
+	@Test
+	public void testStepWhileRunningStepsOnce() throws Exception {
+		final World w = blinker();
+		final Frames frames = new Frames(w);
+		final SimulationScheduler scheduler = new SimulationScheduler(w, frames);
+		for (int j = 0; j < 10; j++) {
+			scheduler.resume();
+			waitForGeneration(w, generation(w) + 20);
+			SwingUtilities.invokeAndWait(new Runnable() {
+				public void run() {
+					w.getLock().lock();
+					try {
+						long deadline = System.currentTimeMillis() + 5000;
+						while (!w.getLock().hasQueuedThreads() && System.currentTimeMillis() < deadline) {
+							Thread.yield();
+						}
+						assertTrue("Worker never waited for the lock", w.getLock().hasQueuedThreads());
+						scheduler.step();
+					} finally {
+						w.getLock().unlock();
+					}
+				}
+			});
+			long stepped = frames.last();
+			assertFalse(scheduler.isRunning());
+			// Give the worker time to step again, if it would
+			Thread.sleep(20);
+			assertEquals(stepped, generation(w));
+		}
+	}
+
+	// Frames are shown at most once per generation, however fast the
+	// generations come, and the last one is always shown after a pause.
+
+	@Test
+	public void testFramesFollowGenerations() throws Exception {
+		World w = blinker();
+		Frames frames = new Frames(w);
+		SimulationScheduler scheduler = new SimulationScheduler(w, frames);
+		scheduler.resume();
+		waitForGeneration(w, 20000);
+		scheduler.pause();
+		long deadline = System.currentTimeMillis() + 5000;
+		while (frames.count() == 0 || frames.last() != generation(w)) {
+			assertTrue("Last generation never shown", System.currentTimeMillis() < deadline);
+			Thread.sleep(1);
+		}
+		assertTrue(frames.count() < generation(w) / 10);
+	}
+
+	// A target rate holds the worker back.
+
+	@Test
+	public void testTargetRate() throws Exception {
+		World w = blinker();
+		SimulationScheduler scheduler = new SimulationScheduler(w, new Frames(w));
+		scheduler.setTargetRate(100);
+		scheduler.resume();
+		Thread.sleep(500);
+		scheduler.pause();
+		long generations = generation(w);
+		assertTrue("Only " + generations + " generations", generations >= 10);
+		assertTrue(generations + " generations", generations <= 80);
+	}
+
+}
@@ -0,0 +1,174 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.zip.*;
+
+public class SnapshotFile {
+
+	// A compact binary snapshot of a world, read and written
+	// through memory-mapped buffers. All numbers are little
+	// endian.
+	//
+	// offset  size  field
+	//      0     8  magic "GOLSNAP1"
+	//      8     4  rows
+	//     12     4  columns
+	//     16     8  generation
+	//     24     4  words per row
+	//     28    32  rule, ASCII, padded with zeros
+	//     60     4  unused
+	//     64        rows x words per row longs, each row
+	//               packed like a BitGrid row
+	//
+	// followed by a DurableFile checksum footer. Snapshots
+	// are written to a temporary file and renamed into
+	// place, so a crash never leaves a torn one.
+
+	private static final byte[] MAGIC = "GOLSNAP1".getBytes(StandardCharsets.US_ASCII);
+
+	public static final int HEADER_SIZE = 64;
+
+	private static final int RULE_SIZE = 32;
+
+	// Most bytes mapped at once; always whole rows
+	private static final long MAX_CHUNK = 1L << 30;
+
+	/**
+	 * Write the world's current generation to a snapshot file, replacing it only
+	 * once the whole snapshot is safely on disk.
+	 */
+
+	public static void write(Path path, World world) throws IOException {
+		write(path, world.getCells(), world.getGeneration(), world.getRule());
+	}
+
+	/**
+	 * Write a grid as a snapshot of the given generation.
+	 */
+
+	public static void write(Path path, BitGrid cells, long generation, Rule rule) throws IOException {
+		int rows = cells.getRows();
+		int wordsPerRow = cells.getWordsPerRow();
+		long rowBytes = 8L * wordsPerRow;
+		CRC32 crc = new CRC32();
+
+		Path temp = DurableFile.tempFor(path, path.getFileName().toString());
+		boolean replaced = false;
+		try {
+			FileChannel ch = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			try {
+				MappedByteBuffer header = ch.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+				header.order(ByteOrder.LITTLE_ENDIAN);
+				header.put(MAGIC);
+				header.putInt(rows);
+				header.putInt(cells.getCols());
+				header.putLong(generation);
+				header.putInt(wordsPerRow);
+				byte[] ruleBytes = rule.toString().getBytes(StandardCharsets.US_ASCII);
+				if (ruleBytes.length >= RULE_SIZE) {
+					throw new IOException("Rule is too long for a snapshot: " + rule);
+				}
+				header.put(ruleBytes);
+				header.force();
+				header.clear();
+				crc.update(header);
+
+				int chunkRows = (int) Math.max(1, Math.min(rows, MAX_CHUNK / rowBytes));
+				for (int row = 0; row < rows; row += chunkRows) {
+					int n = Math.min(chunkRows, rows - row);
+					MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + row * rowBytes, n * rowBytes);
+					LongBuffer out = map.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+					for (int j = row; j < row + n; j++) {
+						cells.writeRow(j, out);
+					}
+					map.force();
+					crc.update(map);
+				}
+				DurableFile.finish(ch, HEADER_SIZE + rows * rowBytes, crc.getValue());
+			} finally {
+				ch.close();
+			}
+			DurableFile.replace(temp, path);
+			replaced = true;
+		} finally {
+			if (!replaced) {
+				DurableFile.discard(temp);
+			}
+		}
+	}
+
+	/**
+	 * Read a snapshot file into a new world, with the rule it was saved with,
+	 * after checking it is not torn.
+	 */
+
+	public static World read(Path path) throws IOException {
+		return read(path, false);
+	}
+
+	/**
+	 * Like read(path), but the world keeps its cells off the heap if offHeap is
+	 * true.
+	 */
+
+	public static World read(Path path, boolean offHeap) throws IOException {
+		FileChannel ch = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			long length = DurableFile.checkedLength(ch);
+			if (length < HEADER_SIZE) {
+				throw new IOException("Not a snapshot file: " + path);
+			}
+			MappedByteBuffer header = ch.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+			header.order(ByteOrder.LITTLE_ENDIAN);
+			byte[] magic = new byte[MAGIC.length];
+			header.get(magic);
+			if (!java.util.Arrays.equals(magic, MAGIC)) {
+				throw new IOException("Not a snapshot file: " + path);
+			}
+			int rows = header.getInt();
+			int cols = header.getInt();
+			long generation = header.getLong();
+			int wordsPerRow = header.getInt();
+			byte[] ruleBytes = new byte[RULE_SIZE];
+			header.get(ruleBytes);
+
+			if (rows != cols || rows < 1) {
+				throw new IOException("Snapshot is not of a square world: " + rows + " x " + cols);
+			}
+			World world = new World(rows, offHeap);
+			BitGrid cells = world.getCells();
+			long rowBytes = 8L * wordsPerRow;
+			if (wordsPerRow != cells.getWordsPerRow() || length != HEADER_SIZE + rows * rowBytes) {
+				throw new IOException("Snapshot is truncated or corrupt: " + path);
+			}
+
+			int chunkRows = (int) Math.max(1, Math.min(rows, MAX_CHUNK / rowBytes));
+			for (int row = 0; row < rows; row += chunkRows) {
+				int n = Math.min(chunkRows, rows - row);
+				MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + row * rowBytes, n * rowBytes);
+				LongBuffer in = map.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+				for (int j = row; j < row + n; j++) {
+					cells.readRow(j, in);
+				}
+			}
+			world.invalidate();
+			world.setGeneration(generation);
+
+			int len = 0;
+			while (len < RULE_SIZE && ruleBytes[len] != 0) {
+				len++;
+			}
+			try {
+				world.setRule(Rule.parse(new String(ruleBytes, 0, len, StandardCharsets.US_ASCII)));
+			} catch (IllegalArgumentException iaex) {
+				throw new IOException("Snapshot has a bad rule: " + iaex.getMessage());
+			}
+			return world;
+		} finally {
+			ch.close();
+		}
+	}
+
+}
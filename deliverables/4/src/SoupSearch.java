@@ -0,0 +1,808 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+public class SoupSearch {
+
+	// Runs many random soups with no GUI, looking for rare
+	// objects. Each soup is a square of random cells in the
+	// middle of an otherwise empty world, run until the
+	// CycleDetector sees the world repeat. What is left is
+	// cut into objects, each of which is classified and
+	// counted in a census.
+	//
+	// Soup n is filled from a generator seeded by the base
+	// seed and n alone, so any soup in the census can be run
+	// again by itself. Every thread takes soups from a
+	// shared counter, keeps its own world and census, and
+	// the censuses are merged at the end, so throughput
+	// grows with the number of cores.
+	//
+	// Objects are the groups of cells alive in any
+	// generation of the final cycle, where cells up to two
+	// apart are in the same group. Groups further apart
+	// share no neighbors, so never affect each other. Each
+	// is run again on its own, in a SparseLife plane, to
+	// find its own period and whether it moves, and is
+	// named by that class plus a hash of its shape which is
+	// the same for every phase, rotation and reflection:
+	//
+	//     xs<cells>_<hash>   still life
+	//     xp<period>_<hash>  oscillator
+	//     xq<period>_<hash>  spaceship
+	//
+	// The world wraps around, so a spaceship left alone
+	// would come back round and crash into the soup's own
+	// debris. Every ESCAPE_INTERVAL generations, any group
+	// which is a spaceship, clear of everything else and
+	// heading away from it, is counted and taken out. Only
+	// groups which have reached the band of ESCAPE_BAND
+	// cells along the edges are looked at, since a ship
+	// has to cross it before it can wrap round. The whole
+	// world is only cut into groups when one in the band is
+	// a spaceship with nothing near it, and what each group
+	// shape turned out to be is remembered, so debris
+	// sitting in the band is only run once.
+
+	// Objects are only run this long to find their period
+	private static final int MAX_OBJECT_PERIOD = 64;
+
+	// Generations between looks for escaping spaceships
+	static final int ESCAPE_INTERVAL = 32;
+
+	// How many cells of empty space a spaceship must have
+	// put between itself and everything else
+	private static final int ESCAPE_MARGIN = 12;
+
+	// Width of the band along the edges where groups are
+	// checked for escaping. Nothing moves faster than a
+	// cell a generation, so no ship can cross it between
+	// two checks.
+	private static final int ESCAPE_BAND = ESCAPE_INTERVAL + ESCAPE_MARGIN;
+
+	// Most group shapes remembered by each searcher before
+	// it starts again
+	private static final int MAX_REMEMBERED = 1 << 16;
+
+	private final int _worldSize;
+
+	private final int _soupSize;
+
+	private final long _soups;
+
+	private final long _seed;
+
+	private final int _threads;
+
+	private final String _engineName;
+
+	private final String _outFile;
+
+	private Rule _rule = Rule.CONWAY;
+
+	private long _maxGenerations = 10000;
+
+	private final AtomicLong _nextSoup = new AtomicLong();
+
+	public SoupSearch(int worldSize, int soupSize, long soups, long seed, String engineName, int threads,
+			String outFile) {
+		_worldSize = worldSize;
+		_soupSize = soupSize;
+		_soups = soups;
+		_seed = seed;
+		_engineName = engineName;
+		_threads = threads;
+		_outFile = outFile;
+	}
+
+	public void setRule(Rule rule) {
+		_rule = rule;
+	}
+
+	/**
+	 * Give up on a soup which has not repeated after this many generations.
+	 */
+
+	public void setMaxGenerations(long generations) {
+		_maxGenerations = generations;
+	}
+
+	/**
+	 * Run every soup, write the census and print a report. Returns false, after
+	 * printing why, if anything went wrong.
+	 */
+
+	public boolean run() {
+		if (!_rule.keepsEmptySpace()) {
+			System.out.println("Cannot search soups of " + _rule + ", which fills empty space");
+			return false;
+		}
+		if (Engines.create(_engineName, 1) == null) {
+			System.out.println("Unknown engine " + _engineName);
+			return false;
+		}
+
+		long start = System.nanoTime();
+		Searcher[] searchers = new Searcher[_threads];
+		Thread[] threads = new Thread[_threads];
+		for (int j = 0; j < _threads; j++) {
+			searchers[j] = new Searcher();
+			threads[j] = new Thread(searchers[j], "Soup search " + j);
+			threads[j].start();
+		}
+		Census census = new Census();
+		try {
+			for (int j = 0; j < _threads; j++) {
+				threads[j].join();
+				census.merge(searchers[j].census);
+			}
+		} catch (InterruptedException iex) {
+			System.out.println("Interrupted");
+			return false;
+		}
+		long elapsed = System.nanoTime() - start;
+
+		if (_outFile != null && !census.write(_outFile)) {
+			System.out.println("Could not write " + _outFile);
+			return false;
+		}
+
+		double seconds = Math.max(elapsed, 1) / 1e9;
+		System.out.println("World:             " + _worldSize + " x " + _worldSize);
+		System.out.println("Soups:             " + _soups + " of " + _soupSize + " x " + _soupSize + ", seed " + _seed);
+		System.out.println("Rule:              " + _rule);
+		System.out.println("Threads:           " + _threads);
+		System.out.println("Unsettled:         " + census.unsettled);
+		System.out.println("Generations:       " + census.generations);
+		System.out.printf("Time:              %.3f s%n", seconds);
+		System.out.printf("Soups/sec:         %.1f%n", _soups / seconds);
+		System.out.println("Objects:           " + census.total() + " of " + census.size() + " kinds");
+		List<Map.Entry<String, long[]>> entries = census.sorted();
+		for (int j = 0; j < Math.min(10, entries.size()); j++) {
+			Map.Entry<String, long[]> e = entries.get(j);
+			System.out.printf("  %12d  %s%n", e.getValue()[0], e.getKey());
+		}
+		return true;
+	}
+
+	/**
+	 * Fill the middle of the world with soup n.
+	 */
+
+	private void fillSoup(World world, long n) {
+		SplittableRandom random = new SplittableRandom(_seed * 0x9E3779B97F4A7C15L + n);
+		int offset = (_worldSize - _soupSize) / 2;
+		for (int j = 0; j < _soupSize; j++) {
+			for (int k = 0; k < _soupSize; k++) {
+				if (random.nextBoolean()) {
+					world.set(offset + j, offset + k, true);
+				}
+			}
+		}
+	}
+
+	class Searcher implements Runnable {
+
+		final Census census = new Census();
+
+		final World world = new World(_worldSize);
+
+		final CycleDetector cycles = new CycleDetector(CycleDetector.DEFAULT_HISTORY);
+
+		// Cells alive in any generation of the cycle
+		final BitGrid seen = new BitGrid(_worldSize, _worldSize);
+
+		// Cells already put in an object
+		final BitGrid taken = new BitGrid(_worldSize, _worldSize);
+
+		int[] stack = new int[256];
+
+		// What classify() made of each group shape checked
+		// for escaping, by shapeHash()
+		final HashMap<Long, Escapee> remembered = new HashMap<Long, Escapee>();
+
+		// The columns of each word in the band, for rows
+		// which are not in it themselves
+		final long[] bandMask;
+
+		Searcher() {
+			world.setEngine(Engines.create(_engineName, 1));
+			world.setRule(_rule);
+			world.addStepListener(cycles);
+			BitGrid band = new BitGrid(1, _worldSize);
+			band.fill(0, 0, Math.min(ESCAPE_BAND, _worldSize));
+			band.fill(0, Math.max(0, _worldSize - ESCAPE_BAND), _worldSize);
+			bandMask = new long[band.getWordsPerRow()];
+			for (int w = 0; w < bandMask.length; w++) {
+				bandMask[w] = band.getWord(0, w);
+			}
+		}
+
+		public void run() {
+			for (long n = _nextSoup.getAndIncrement(); n < _soups; n = _nextSoup.getAndIncrement()) {
+				world.clear();
+				fillSoup(world, n);
+				search(n);
+			}
+		}
+
+		/**
+		 * Run the world, which holds the given soup, until it repeats, and count
+		 * what is left.
+		 */
+
+		void search(long soup) {
+			cycles.reset(world);
+			while (cycles.getPeriod() == 0 && world.getGeneration() < _maxGenerations) {
+				world.step();
+				if (world.getGeneration() % ESCAPE_INTERVAL == 0) {
+					removeEscapes(soup);
+				}
+			}
+			census.generations += world.getGeneration();
+			if (cycles.getPeriod() == 0) {
+				census.unsettled++;
+			} else {
+				separate(soup, cycles.getPeriod());
+			}
+		}
+
+		/**
+		 * Count and take out every spaceship which is clear of the rest of the world
+		 * and moving away from it. Removing one is an edit, so the cycle detector
+		 * starts again.
+		 */
+
+		void removeEscapes(long soup) {
+			BitGrid cells = world.getCells();
+			if (bandEmpty(cells)) {
+				// Nothing has got far enough to wrap round
+				return;
+			}
+			taken.clear();
+			for (int j = 0; j < _worldSize; j++) {
+				for (int w = 0; w < cells.getWordsPerRow(); w++) {
+					seen.setWord(j, w, cells.getWord(j, w));
+				}
+			}
+
+			// Most of the time nothing in the band is a
+			// spaceship with room to escape, so look at just
+			// the groups there before cutting up everything.
+			if (!shipInBand(cells)) {
+				return;
+			}
+			taken.clear();
+			ArrayList<long[]> groups = new ArrayList<long[]>();
+			for (int j = 0; j < _worldSize; j++) {
+				for (int w = 0; w < seen.getWordsPerRow(); w++) {
+					for (long bits = seen.getWord(j, w) & ~taken.getWord(j, w); bits != 0; bits &= bits - 1) {
+						int k = (w << 6) + Long.numberOfTrailingZeros(bits);
+						if (!taken.get(j, k)) {
+							groups.add(flood(j, k).cells());
+						}
+					}
+				}
+			}
+
+			// top, left, bottom, right of each group
+			int[] boxes = new int[4 * groups.size()];
+			for (int g = 0; g < groups.size(); g++) {
+				long[] group = groups.get(g);
+				int b = 4 * g;
+				boxes[b] = boxes[b + 1] = Integer.MAX_VALUE;
+				boxes[b + 2] = boxes[b + 3] = Integer.MIN_VALUE;
+				for (int j = 0; j < group.length; j++) {
+					int r = SparseLife.row(group[j]);
+					int c = SparseLife.col(group[j]);
+					boxes[b] = Math.min(boxes[b], r);
+					boxes[b + 1] = Math.min(boxes[b + 1], c);
+					boxes[b + 2] = Math.max(boxes[b + 2], r);
+					boxes[b + 3] = Math.max(boxes[b + 3], c);
+				}
+			}
+
+			for (int g = 0; g < groups.size(); g++) {
+				if (!inBand(boxes, g) || !escaping(boxes, g, null)) {
+					continue;
+				}
+				long[] group = groups.get(g);
+				Escapee e = classifyGroup(group);
+				if (!e.name.startsWith("xq") || !escaping(boxes, g, e.velocity)) {
+					continue;
+				}
+				census.add(e.name, soup);
+				for (int j = 0; j < group.length; j++) {
+					int r = Math.floorMod(SparseLife.row(group[j]), _worldSize);
+					int c = Math.floorMod(SparseLife.col(group[j]), _worldSize);
+					world.set(r, c, false);
+				}
+			}
+		}
+
+		/**
+		 * Whether any group of seen cells with a cell in the band could be a
+		 * spaceship escaping. Groups found are marked taken.
+		 */
+
+		boolean shipInBand(BitGrid cells) {
+			if (acrossEdge(cells)) {
+				// Groups may then carry on past an edge, and
+				// be nearer to others than they look here
+				return true;
+			}
+			int far = _worldSize - ESCAPE_BAND;
+			for (int j = 0; j < _worldSize; j++) {
+				boolean rowInBand = j < ESCAPE_BAND || j >= far;
+				for (int w = 0; w < bandMask.length; w++) {
+					long band = seen.getWord(j, w) & (rowInBand ? -1L : bandMask[w]);
+					for (long bits = band & ~taken.getWord(j, w); bits != 0; bits &= bits - 1) {
+						int k = (w << 6) + Long.numberOfTrailingZeros(bits);
+						if (taken.get(j, k)) {
+							continue;
+						}
+						long[] group = flood(j, k).cells();
+						if (alone(cells, group) && classifyGroup(group).name.startsWith("xq")) {
+							return true;
+						}
+					}
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * Whether live cells within two cells of both sides of an edge could join a
+		 * group across it.
+		 */
+
+		boolean acrossEdge(BitGrid cells) {
+			int n = _worldSize;
+			long top = 0;
+			long bottom = 0;
+			for (int w = 0; w < bandMask.length; w++) {
+				top |= cells.getWord(0, w) | cells.getWord(Math.min(1, n - 1), w);
+				bottom |= cells.getWord(n - 1, w) | cells.getWord(Math.max(0, n - 2), w);
+			}
+			if (top != 0 && bottom != 0) {
+				return true;
+			}
+			boolean left = false;
+			boolean right = false;
+			for (int j = 0; j < n && !(left && right); j++) {
+				left |= cells.get(j, 0) || cells.get(j, Math.min(1, n - 1));
+				right |= cells.get(j, n - 1) || cells.get(j, Math.max(0, n - 2));
+			}
+			return left && right;
+		}
+
+		/**
+		 * Whether the only live cells within ESCAPE_MARGIN cells of the group's box
+		 * are its own, as they must be for escaping() to find it clear of every
+		 * other group. Only for groups which do not cross an edge.
+		 */
+
+		boolean alone(BitGrid cells, long[] group) {
+			int top = Integer.MAX_VALUE;
+			int left = Integer.MAX_VALUE;
+			int bottom = Integer.MIN_VALUE;
+			int right = Integer.MIN_VALUE;
+			for (int j = 0; j < group.length; j++) {
+				top = Math.min(top, SparseLife.row(group[j]));
+				left = Math.min(left, SparseLife.col(group[j]));
+				bottom = Math.max(bottom, SparseLife.row(group[j]));
+				right = Math.max(right, SparseLife.col(group[j]));
+			}
+			int fromCol = Math.max(0, left - ESCAPE_MARGIN);
+			int toCol = Math.min(_worldSize - 1, right + ESCAPE_MARGIN);
+			long live = 0;
+			for (int r = Math.max(0, top - ESCAPE_MARGIN); r <= Math.min(_worldSize - 1, bottom + ESCAPE_MARGIN); r++) {
+				for (int w = fromCol >> 6; w <= toCol >> 6; w++) {
+					long mask = -1L;
+					if (w == fromCol >> 6) {
+						mask &= -1L << (fromCol & 63);
+					}
+					if (w == toCol >> 6) {
+						mask &= -1L >>> (63 - (toCol & 63));
+					}
+					live += Long.bitCount(cells.getWord(r, w) & mask);
+				}
+				if (live > group.length) {
+					return false;
+				}
+			}
+			return live == group.length;
+		}
+
+		/**
+		 * Whether no cell within ESCAPE_BAND cells of an edge of the world is alive.
+		 */
+
+		boolean bandEmpty(BitGrid cells) {
+			int far = _worldSize - ESCAPE_BAND;
+			for (int j = 0; j < _worldSize; j++) {
+				boolean rowInBand = j < ESCAPE_BAND || j >= far;
+				for (int w = 0; w < bandMask.length; w++) {
+					if ((cells.getWord(j, w) & (rowInBand ? -1L : bandMask[w])) != 0) {
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Whether any of group g is within ESCAPE_BAND cells of an edge of the world,
+		 * or past it.
+		 */
+
+		boolean inBand(int[] boxes, int g) {
+			int b = 4 * g;
+			int far = _worldSize - ESCAPE_BAND;
+			return boxes[b] < ESCAPE_BAND || boxes[b + 1] < ESCAPE_BAND || boxes[b + 2] >= far
+					|| boxes[b + 3] >= far;
+		}
+
+		/**
+		 * Classify a group of cells, given as plane keys, as an object on its own,
+		 * remembering the answer for any group of the same shape.
+		 */
+
+		Escapee classifyGroup(long[] group) {
+			long key = shapeHash(group);
+			Escapee e = remembered.get(key);
+			if (e == null) {
+				SparseLife object = new SparseLife(_rule);
+				for (int j = 0; j < group.length; j++) {
+					object.set(SparseLife.row(group[j]), SparseLife.col(group[j]), true);
+				}
+				int[] velocity = new int[2];
+				e = new Escapee(classify(object, MAX_OBJECT_PERIOD, velocity), velocity);
+				if (remembered.size() >= MAX_REMEMBERED) {
+					remembered.clear();
+				}
+				remembered.put(key, e);
+			}
+			return e;
+		}
+
+		/**
+		 * Whether group g is more than ESCAPE_MARGIN cells clear of every other group
+		 * along some axis, and not moving towards it along that axis. With a null
+		 * velocity, only whether it is clear.
+		 */
+
+		boolean escaping(int[] boxes, int g, int[] velocity) {
+			int a = 4 * g;
+			for (int b = 0; b < boxes.length; b += 4) {
+				if (b == a) {
+					continue;
+				}
+				boolean above = boxes[a + 2] + ESCAPE_MARGIN < boxes[b];
+				boolean below = boxes[a] - ESCAPE_MARGIN > boxes[b + 2];
+				boolean left = boxes[a + 3] + ESCAPE_MARGIN < boxes[b + 1];
+				boolean right = boxes[a + 1] - ESCAPE_MARGIN > boxes[b + 3];
+				if (velocity != null) {
+					above &= velocity[0] <= 0;
+					below &= velocity[0] >= 0;
+					left &= velocity[1] <= 0;
+					right &= velocity[1] >= 0;
+				}
+				if (!above && !below && !left && !right) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Cut a world which repeats every period generations into objects, and count
+		 * them.
+		 */
+
+		void separate(long soup, long period) {
+			BitGrid cells = world.getCells();
+			seen.clear();
+			taken.clear();
+			for (long g = 0; g < period; g++) {
+				for (int j = 0; j < _worldSize; j++) {
+					for (int w = 0; w < cells.getWordsPerRow(); w++) {
+						seen.setWord(j, w, seen.getWord(j, w) | cells.getWord(j, w));
+					}
+				}
+				world.step();
+				cells = world.getCells();
+			}
+
+			for (int j = 0; j < _worldSize; j++) {
+				for (int w = 0; w < seen.getWordsPerRow(); w++) {
+					for (long bits = seen.getWord(j, w) & ~taken.getWord(j, w); bits != 0; bits &= bits - 1) {
+						int k = (w << 6) + Long.numberOfTrailingZeros(bits);
+						if (!taken.get(j, k)) {
+							SparseLife object = flood(j, k);
+							if (object.population() != 0) {
+								census.add(classify(object, period, null), soup);
+							}
+						}
+					}
+				}
+			}
+		}
+
+		/**
+		 * Take the group of seen cells joined to (row, col) through cells at most two
+		 * apart, returning the ones alive now as a plane. Coordinates carry on past the edges rather than
+		 * wrapping, so an object lying across an edge stays in one piece.
+		 */
+
+		SparseLife flood(int row, int col) {
+			SparseLife object = new SparseLife(_rule);
+			int n = _worldSize;
+			int top = 0;
+			push(top++, row, col);
+			taken.set(row, col, true);
+			while (top > 0) {
+				top--;
+				int r = stack[2 * top];
+				int c = stack[2 * top + 1];
+				int wr = Math.floorMod(r, n);
+				int wc = Math.floorMod(c, n);
+				if (world.get(wr, wc)) {
+					object.set(r, c, true);
+				}
+				for (int dr = -2; dr <= 2; dr++) {
+					for (int dc = -2; dc <= 2; dc++) {
+						int nr = Math.floorMod(r + dr, n);
+						int nc = Math.floorMod(c + dc, n);
+						if (seen.get(nr, nc) && !taken.get(nr, nc)) {
+							taken.set(nr, nc, true);
+							push(top++, r + dr, c + dc);
+						}
+					}
+				}
+			}
+			return object;
+		}
+
+		void push(int top, int row, int col) {
+			if (2 * top + 2 > stack.length) {
+				stack = Arrays.copyOf(stack, 2 * stack.length);
+			}
+			stack[2 * top] = row;
+			stack[2 * top + 1] = col;
+		}
+	}
+
+	/**
+	 * Name an object by its class and the smallest hash of its shape over all of
+	 * its phases and symmetries. If velocity is not null, the rows and columns the
+	 * object moves by in one period are put in it.
+	 */
+
+	String classify(SparseLife object, long worldPeriod, int[] velocity) {
+		long[] first = shape(object);
+		long hash = canonicalHash(first);
+		long population = object.population();
+		int limit = (int) Math.min(worldPeriod, MAX_OBJECT_PERIOD);
+		for (int q = 1; q <= limit; q++) {
+			object.step();
+			long[] now = shape(object);
+			if (sameShape(now, first)) {
+				boolean moved = now[0] != first[0];
+				if (velocity != null) {
+					velocity[0] = SparseLife.row(now[0]) - SparseLife.row(first[0]);
+					velocity[1] = SparseLife.col(now[0]) - SparseLife.col(first[0]);
+				}
+				String prefix = q == 1 && !moved ? "xs" + population : (moved ? "xq" : "xp") + q;
+				return prefix + "_" + Long.toHexString(hash);
+			}
+			hash = Math.min(hash, canonicalHash(now));
+		}
+		// Not back within the limit, or not on its own
+		return "xx_" + Long.toHexString(hash);
+	}
+
+	/**
+	 * A hash of a group of cells, given as plane keys, which is the same wherever
+	 * the group is but differs for each phase, rotation and reflection.
+	 */
+
+	static long shapeHash(long[] cells) {
+		int top = Integer.MAX_VALUE;
+		int left = Integer.MAX_VALUE;
+		for (int j = 0; j < cells.length; j++) {
+			top = Math.min(top, SparseLife.row(cells[j]));
+			left = Math.min(left, SparseLife.col(cells[j]));
+		}
+		long[] relative = new long[cells.length];
+		for (int j = 0; j < cells.length; j++) {
+			relative[j] = SparseLife.key(SparseLife.row(cells[j]) - top, SparseLife.col(cells[j]) - left);
+		}
+		Arrays.sort(relative);
+		long h = cells.length;
+		for (int j = 0; j < relative.length; j++) {
+			h = (h ^ relative[j]) * 0x9E3779B97F4A7C15L;
+			h ^= h >>> 29;
+		}
+		return h;
+	}
+
+	/**
+	 * The object's live cells: element 0 is its top left corner, and the rest the
+	 * packed, sorted coordinates relative to it.
+	 */
+
+	private static long[] shape(SparseLife object) {
+		long[] cells = object.cells();
+		int top = Integer.MAX_VALUE;
+		int left = Integer.MAX_VALUE;
+		for (int j = 0; j < cells.length; j++) {
+			top = Math.min(top, SparseLife.row(cells[j]));
+			left = Math.min(left, SparseLife.col(cells[j]));
+		}
+		long[] shape = new long[cells.length + 1];
+		shape[0] = SparseLife.key(top, left);
+		for (int j = 0; j < cells.length; j++) {
+			shape[j + 1] = SparseLife.key(SparseLife.row(cells[j]) - top, SparseLife.col(cells[j]) - left);
+		}
+		Arrays.sort(shape, 1, shape.length);
+		return shape;
+	}
+
+	private static boolean sameShape(long[] a, long[] b) {
+		if (a.length != b.length) {
+			return false;
+		}
+		for (int j = 1; j < a.length; j++) {
+			if (a[j] != b[j]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Smallest hash of the shape over its eight rotations and reflections. A
+	 * hash of the sorted cells after moving each image to (0, 0).
+	 */
+
+	private static long canonicalHash(long[] shape) {
+		int n = shape.length - 1;
+		long[] image = new long[n];
+		long best = Long.MAX_VALUE;
+		for (int s = 0; s < 8; s++) {
+			int top = Integer.MAX_VALUE;
+			int left = Integer.MAX_VALUE;
+			for (int j = 0; j < n; j++) {
+				int r = SparseLife.row(shape[j + 1]);
+				int c = SparseLife.col(shape[j + 1]);
+				int t;
+				if ((s & 1) != 0) {
+					t = r;
+					r = c;
+					c = t;
+				}
+				if ((s & 2) != 0) {
+					r = -r;
+				}
+				if ((s & 4) != 0) {
+					c = -c;
+				}
+				image[j] = SparseLife.key(r, c);
+				top = Math.min(top, r);
+				left = Math.min(left, c);
+			}
+			for (int j = 0; j < n; j++) {
+				image[j] = SparseLife.key(SparseLife.row(image[j]) - top, SparseLife.col(image[j]) - left);
+			}
+			Arrays.sort(image);
+			long h = n;
+			for (int j = 0; j < n; j++) {
+				h = (h ^ image[j]) * 0x9E3779B97F4A7C15L;
+				h ^= h >>> 29;
+			}
+			best = Math.min(best, h);
+		}
+		return best;
+	}
+
+	/**
+	 * The name classify() gave a group, and the rows and columns it moves by in
+	 * one period.
+	 */
+
+	static class Escapee {
+
+		final String name;
+
+		final int[] velocity;
+
+		Escapee(String name, int[] velocity) {
+			this.name = name;
+			this.velocity = velocity;
+		}
+	}
+
+	static class Census {
+
+		// Count, then the first soup it was found in
+		final HashMap<String, long[]> counts = new HashMap<String, long[]>();
+
+		long unsettled;
+
+		long generations;
+
+		void add(String name, long soup) {
+			long[] c = counts.get(name);
+			if (c == null) {
+				counts.put(name, new long[] { 1, soup });
+			} else {
+				c[0]++;
+				c[1] = Math.min(c[1], soup);
+			}
+		}
+
+		void merge(Census other) {
+			for (Map.Entry<String, long[]> e : other.counts.entrySet()) {
+				long[] c = counts.get(e.getKey());
+				if (c == null) {
+					counts.put(e.getKey(), e.getValue().clone());
+				} else {
+					c[0] += e.getValue()[0];
+					c[1] = Math.min(c[1], e.getValue()[1]);
+				}
+			}
+			unsettled += other.unsettled;
+			generations += other.generations;
+		}
+
+		int size() {
+			return counts.size();
+		}
+
+		long total() {
+			long total = 0;
+			for (long[] c : counts.values()) {
+				total += c[0];
+			}
+			return total;
+		}
+
+		/**
+		 * Most common first, then by name.
+		 */
+
+		List<Map.Entry<String, long[]>> sorted() {
+			List<Map.Entry<String, long[]>> entries = new ArrayList<Map.Entry<String, long[]>>(counts.entrySet());
+			Collections.sort(entries, new Comparator<Map.Entry<String, long[]>>() {
+				public int compare(Map.Entry<String, long[]> a, Map.Entry<String, long[]> b) {
+					int c = Long.compare(b.getValue()[0], a.getValue()[0]);
+					return c != 0 ? c : a.getKey().compareTo(b.getKey());
+				}
+			});
+			return entries;
+		}
+
+		/**
+		 * One line per kind of object: how many were found, its name, and the first
+		 * soup it was found in.
+		 */
+
+		boolean write(String fileName) {
+			try {
+				PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(fileName)));
+				try {
+					for (Map.Entry<String, long[]> e : sorted()) {
+						out.println(e.getValue()[0] + " " + e.getKey() + " " + e.getValue()[1]);
+					}
+				} finally {
+					out.close();
+				}
+				return !out.checkError();
+			} catch (IOException ioex) {
+				return false;
+			}
+		}
+	}
+
+}
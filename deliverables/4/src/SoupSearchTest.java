@@ -0,0 +1,104 @@
+import static org.junit.Assert.*;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+public class SoupSearchTest {
+
+	// A searcher over a 128 x 128 world, for soups put in by hand
+	private static SoupSearch.Searcher searcher() {
+		SoupSearch search = new SoupSearch(128, 16, 0, 1, "swar", 1, null);
+		return search.new Searcher();
+	}
+
+	// A glider heading down and to the right, top left at (row, col)
+	private static void glider(World w, int row, int col) {
+		w.set(row, col + 1, true);
+		w.set(row + 1, col + 2, true);
+		w.set(row + 2, col, true);
+		w.set(row + 2, col + 1, true);
+		w.set(row + 2, col + 2, true);
+	}
+
+	// Count the census entries whose names start with prefix
+	private static long count(SoupSearch.Searcher s, String prefix) {
+		long n = 0;
+		for (Map.Entry<String, long[]> e : s.census.counts.entrySet()) {
+			if (e.getKey().startsWith(prefix)) {
+				n += e.getValue()[0];
+			}
+		}
+		return n;
+	}
+
+	// A soup which is just a glider is one glider, and nothing else.
+
+	@Test
+	public void testLoneGlider() {
+		SoupSearch.Searcher s = searcher();
+		glider(s.world, 60, 60);
+		s.search(0);
+		assertEquals(1, s.census.total());
+		assertEquals(1, count(s, "xq4_"));
+		assertEquals(0, s.census.unsettled);
+	}
+
+	// A glider flying away from a block is taken out before it can wrap
+	// round and hit the block, so both are counted as they are.
+
+	@Test
+	public void testGliderLeavingBlock() {
+		SoupSearch.Searcher s = searcher();
+		s.world.set(50, 50, true);
+		s.world.set(50, 51, true);
+		s.world.set(51, 50, true);
+		s.world.set(51, 51, true);
+		glider(s.world, 60, 60);
+		s.search(0);
+		assertEquals(2, s.census.total());
+		assertEquals(1, count(s, "xq4_"));
+		assertEquals(1, count(s, "xs4_"));
+	}
+
+	// A block sitting in the band along the edges is run once to find it
+	// is no spaceship, and then remembered at every later look, while a
+	// glider reaching the band is still taken out before it wraps round
+	// into the block.
+
+	@Test
+	public void testBandShapesRemembered() {
+		SoupSearch.Searcher s = searcher();
+		s.world.set(5, 5, true);
+		s.world.set(5, 6, true);
+		s.world.set(6, 5, true);
+		s.world.set(6, 6, true);
+		glider(s.world, 60, 60);
+		s.search(0);
+		assertEquals(2, s.census.total());
+		assertEquals(1, count(s, "xq4_"));
+		assertEquals(1, count(s, "xs4_"));
+		long block = SoupSearch.shapeHash(new long[] { SparseLife.key(5, 5), SparseLife.key(5, 6),
+				SparseLife.key(6, 5), SparseLife.key(6, 6) });
+		assertTrue(s.remembered.get(block).name.startsWith("xs4_"));
+		assertTrue(s.remembered.size() <= 5);
+	}
+
+	// Two blocks with one cell between them never touch, but they are close
+	// enough to share neighbors, so they are kept together as one still life.
+
+	@Test
+	public void testCloseObjectsStayTogether() {
+		SoupSearch.Searcher s = searcher();
+		for (int col : new int[] { 50, 53 }) {
+			s.world.set(50, col, true);
+			s.world.set(50, col + 1, true);
+			s.world.set(51, col, true);
+			s.world.set(51, col + 1, true);
+		}
+		s.search(0);
+		assertEquals(1, s.census.total());
+		assertEquals(1, count(s, "xs8_"));
+	}
+
+}
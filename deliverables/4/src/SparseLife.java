@@ -0,0 +1,172 @@
+public class SparseLife {
+
+	// Life on an unbounded plane which stores nothing but
+	// its live cells, in a LongHashSet of packed (row, col)
+	// coordinates. Each generation is computed from the live
+	// cells' neighborhoods alone, so the cost of a step is
+	// proportional to the population, whatever the area the
+	// pattern spreads over. Suits sparse patterns, such as
+	// spaceships crossing millions of cells, that HashLife
+	// gains little on because they never repeat.
+	//
+	// A step counts neighbors into a second table: every
+	// live cell adds 1 to its own entry and 2 to each of its
+	// eight neighbors', so an entry is exactly 2 * count +
+	// alive, the index of the cell's next state in the
+	// rule's bit table.
+	//
+	// Rows and columns are ints. Like HashLife, the plane
+	// only works for rules where empty space stays empty.
+
+	private final Rule _rule;
+
+	private LongHashSet _live = new LongHashSet();
+
+	// The next generation is built here, then swapped in
+	private LongHashSet _spare = new LongHashSet();
+
+	private final LongHashSet _counts = new LongHashSet();
+
+	private long _generation = 0;
+
+	public SparseLife() {
+		this(Rule.CONWAY);
+	}
+
+	/**
+	 * An empty plane stepped by the given rule. Throws IllegalArgumentException if
+	 * the rule makes cells appear in empty space.
+	 */
+
+	public SparseLife(Rule rule) {
+		if (!rule.keepsEmptySpace()) {
+			throw new IllegalArgumentException("SparseLife cannot run " + rule + ", which fills empty space");
+		}
+		_rule = rule;
+	}
+
+	/**
+	 * Build a plane holding the cells of the given world, with its top left
+	 * cell at (0, 0).
+	 */
+
+	public static SparseLife fromWorld(World world) {
+		SparseLife life = new SparseLife(world.getRule());
+		BitGrid cells = world.getCells();
+		for (int j = 0; j < cells.getRows(); j++) {
+			for (int w = 0; w < cells.getWordsPerRow(); w++) {
+				for (long bits = cells.getWord(j, w); bits != 0; bits &= bits - 1) {
+					life._live.add(key(j, (w << 6) + Long.numberOfTrailingZeros(bits)));
+				}
+			}
+		}
+		life.setGeneration(world.getGeneration());
+		return life;
+	}
+
+	static long key(int row, int col) {
+		return (long) row << 32 | (col & 0xFFFFFFFFL);
+	}
+
+	static int row(long key) {
+		return (int) (key >> 32);
+	}
+
+	static int col(long key) {
+		return (int) key;
+	}
+
+	public Rule getRule() {
+		return _rule;
+	}
+
+	public long getGeneration() {
+		return _generation;
+	}
+
+	public void setGeneration(long generation) {
+		_generation = generation;
+	}
+
+	public long population() {
+		return _live.size();
+	}
+
+	/**
+	 * The live cells, as keys made by key(row, col), in no particular order.
+	 */
+
+	public long[] cells() {
+		long[] cells = new long[_live.size()];
+		int n = 0;
+		for (int i = 0; i < _live.capacity(); i++) {
+			if (_live.countAt(i) != 0) {
+				cells[n++] = _live.keyAt(i);
+			}
+		}
+		return cells;
+	}
+
+	public boolean get(int row, int col) {
+		return _live.contains(key(row, col));
+	}
+
+	public void set(int row, int col, boolean alive) {
+		if (alive) {
+			_live.add(key(row, col));
+		} else {
+			_live.remove(key(row, col));
+		}
+	}
+
+	/**
+	 * Advance the plane by one generation.
+	 */
+
+	public void step() {
+		LongHashSet counts = _counts;
+		counts.clear();
+		LongHashSet live = _live;
+		for (int i = 0; i < live.capacity(); i++) {
+			if (live.countAt(i) == 0) {
+				continue;
+			}
+			long key = live.keyAt(i);
+			int row = row(key);
+			int col = col(key);
+			counts.add(key, 1);
+			counts.add(key(row - 1, col - 1), 2);
+			counts.add(key(row - 1, col), 2);
+			counts.add(key(row - 1, col + 1), 2);
+			counts.add(key(row, col - 1), 2);
+			counts.add(key(row, col + 1), 2);
+			counts.add(key(row + 1, col - 1), 2);
+			counts.add(key(row + 1, col), 2);
+			counts.add(key(row + 1, col + 1), 2);
+		}
+
+		int table = _rule.getTable();
+		LongHashSet next = _spare;
+		next.clear();
+		for (int i = 0; i < counts.capacity(); i++) {
+			int entry = counts.countAt(i);
+			if (entry != 0 && (table >>> entry & 1) != 0) {
+				next.add(counts.keyAt(i));
+			}
+		}
+		_spare = live;
+		_live = next;
+		_generation++;
+	}
+
+	/**
+	 * Advance the plane by any number of generations.
+	 */
+
+	public void step(long generations) {
+		for (long g = 0; g < generations; g++) {
+			step();
+		}
+	}
+
+}
@@ -0,0 +1,11 @@
+public interface StepListener {
+
+	/**
+	 * Called at the end of every step of a world, on the thread which stepped it,
+	 * and so with the world's lock held if that thread took it. This must not
+	 * block, since the simulation waits for it.
+	 */
+
+	void stepped(World world);
+
+}
@@ -0,0 +1,141 @@
+public class SwarEngine implements LifeEngine {
+
+	// Computes 64 cells at a time. Each of a cell's eight
+	// neighbors is lined up with the cell by shifting the
+	// rows above, at and below it one bit west and east,
+	// then the eight words are summed bit-wise with full
+	// adders into a four bit count per cell.
+	//
+	// Conway's rule is then a few bit-wise operations. Any
+	// other rule is looked up in its word masks: the next
+	// state for each count is chosen per cell by a tree of
+	// multiplexers on the count's bits.
+
+	/**
+	 * Word w of the given row shifted so that bit i holds the cell to the west
+	 * (column - 1) of the cell bit i normally holds, wrapping around.
+	 */
+
+	static long west(BitGrid g, int row, int w) {
+		long word = g.getWord(row, w);
+		long carry;
+		if (w > 0) {
+			carry = g.getWord(row, w - 1) >>> 63;
+		} else {
+			int lastCol = g.getCols() - 1;
+			carry = g.getWord(row, lastCol >>> 6) >>> lastCol & 1;
+		}
+		return word << 1 | carry;
+	}
+
+	/**
+	 * Word w of the given row shifted so that bit i holds the cell to the east
+	 * (column + 1) of the cell bit i normally holds, wrapping around.
+	 */
+
+	static long east(BitGrid g, int row, int w) {
+		long word = g.getWord(row, w);
+		int last = g.getWordsPerRow() - 1;
+		if (w < last) {
+			return word >>> 1 | g.getWord(row, w + 1) << 63;
+		}
+		int lastCol = g.getCols() - 1;
+		return word >>> 1 | (g.getWord(row, 0) & 1) << lastCol;
+	}
+
+	public boolean step(Rule rule, BitGrid src, BitGrid dst, int fromRow, int toRow, int fromWord, int toWord) {
+		boolean conway = rule.isConway();
+
+		// The rule's masks, in locals so they stay in
+		// registers rather than being reloaded per word
+		long[] birth = rule.getBirthMasks();
+		long[] flip = rule.getFlipMasks();
+		long b0 = birth[0], b1 = birth[1], b2 = birth[2], b3 = birth[3], b4 = birth[4];
+		long b5 = birth[5], b6 = birth[6], b7 = birth[7], b8 = birth[8];
+		long f0 = flip[0], f1 = flip[1], f2 = flip[2], f3 = flip[3], f4 = flip[4];
+		long f5 = flip[5], f6 = flip[6], f7 = flip[7], f8 = flip[8];
+
+		int rows = src.getRows();
+		int wordsPerRow = src.getWordsPerRow();
+		long lastWordMask = src.getLastWordMask();
+		long changed = 0;
+
+		for (int j = fromRow; j < toRow; j++) {
+			int up = j == 0 ? rows - 1 : j - 1;
+			int down = j == rows - 1 ? 0 : j + 1;
+
+			for (int w = fromWord; w < toWord; w++) {
+				long alive = src.getWord(j, w);
+
+				// Rows above and below: add three
+				// neighbors each into ones and twos.
+				long a = west(src, up, w);
+				long b = src.getWord(up, w);
+				long c = east(src, up, w);
+				long n0 = a ^ b ^ c;
+				long n1 = (a & b) | (c & (a ^ b));
+
+				a = west(src, down, w);
+				b = src.getWord(down, w);
+				c = east(src, down, w);
+				long s0 = a ^ b ^ c;
+				long s1 = (a & b) | (c & (a ^ b));
+
+				// Same row: just the two sides.
+				a = west(src, j, w);
+				c = east(src, j, w);
+				long m0 = a ^ c;
+				long m1 = a & c;
+
+				// Ones
+				long ones = n0 ^ s0 ^ m0;
+				long carry = (n0 & s0) | (m0 & (n0 ^ s0));
+
+				// Twos: n1 + s1 + m1 + carry
+				long t0 = n1 ^ s1 ^ m1;
+				long t1 = (n1 & s1) | (m1 & (n1 ^ s1));
+				long twos = t0 ^ carry;
+				long c4 = t0 & carry;
+
+				// Fours and eights
+				long fours = t1 ^ c4;
+				long eights = t1 & c4;
+
+				long next;
+				if (conway) {
+					// Alive next if the count is 3, or
+					// it is 2 and the cell is alive now.
+					next = ~eights & ~fours & twos & (ones | alive);
+				} else {
+					// Next state for each count, picked by
+					// the ones, twos and fours bits, then by
+					// eights: a count of 8 has the rest clear.
+					long g0 = b0 ^ (alive & f0);
+					long g1 = b1 ^ (alive & f1);
+					long g2 = b2 ^ (alive & f2);
+					long g3 = b3 ^ (alive & f3);
+					long g4 = b4 ^ (alive & f4);
+					long g5 = b5 ^ (alive & f5);
+					long g6 = b6 ^ (alive & f6);
+					long g7 = b7 ^ (alive & f7);
+					long h0 = g0 ^ (ones & (g0 ^ g1));
+					long h1 = g2 ^ (ones & (g2 ^ g3));
+					long h2 = g4 ^ (ones & (g4 ^ g5));
+					long h3 = g6 ^ (ones & (g6 ^ g7));
+					long i0 = h0 ^ (twos & (h0 ^ h1));
+					long i1 = h2 ^ (twos & (h2 ^ h3));
+					long low = i0 ^ (fours & (i0 ^ i1));
+					next = low ^ (eights & (low ^ b8 ^ (alive & f8)));
+				}
+
+				if (w == wordsPerRow - 1) {
+					next &= lastWordMask;
+				}
+				changed |= next ^ alive;
+				dst.setWord(j, w, next);
+			}
+		}
+		return changed != 0;
+	}
+
+}
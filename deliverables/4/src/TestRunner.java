@@ -11,6 +11,19 @@ public class TestRunner {
 
 		// ADD ANY CLASSES YOU WISH TO TEST HERE
 
+		classesToTest.add(EngineTest.class);
+		classesToTest.add(SoupSearchTest.class);
+		classesToTest.add(WorldTest.class);
+		classesToTest.add(FileAccessTest.class);
+		classesToTest.add(AutosaveTest.class);
+		classesToTest.add(CycleDetectorTest.class);
+		classesToTest.add(RecorderTest.class);
+		classesToTest.add(SimulationSchedulerTest.class);
+		classesToTest.add(BatchRunnerTest.class);
+		classesToTest.add(GridCanvasTest.class);
+		classesToTest.add(MainPanelTest.class);
+		classesToTest.add(ViewportCanvasTest.class);
+
 		// For all test classes added, loop through and use JUnit
 		// to run them.
 
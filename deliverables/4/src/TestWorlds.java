@@ -0,0 +1,23 @@
+import java.util.Random;
+
+public class TestWorlds {
+
+	// Worlds shared by the tests.
+
+	/**
+	 * A size x size world with about a third of its cells alive at random, the
+	 * same one every time for a given seed.
+	 */
+
+	static World soup(int size, long seed) {
+		World w = new World(size);
+		Random r = new Random(seed);
+		for (int row = 0; row < size; row++) {
+			for (int col = 0; col < size; col++) {
+				w.set(row, col, r.nextInt(3) == 0);
+			}
+		}
+		return w;
+	}
+
+}
@@ -0,0 +1,72 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+public class TextWriter {
+
+	// Writes a grid in the format of World.toString() and
+	// the Write button, straight from the packed words into
+	// a byte buffer, without building the whole text first.
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private static final byte ALIVE = 'X';
+
+	private static final byte DEAD = '.';
+
+	private final WritableByteChannel _out;
+
+	private final ByteBuffer _buf = ByteBuffer.allocate(BUFFER_SIZE);
+
+	public TextWriter(WritableByteChannel out) {
+		_out = out;
+	}
+
+	/**
+	 * Write one line per row of the grid, each ending in "\n", then the given
+	 * trailer (the line separator, to match PrintWriter.println()).
+	 */
+
+	public void write(BitGrid grid, String trailer) throws IOException {
+		int rows = grid.getRows();
+		int cols = grid.getCols();
+		int wordsPerRow = grid.getWordsPerRow();
+		byte[] bytes = _buf.array();
+
+		for (int j = 0; j < rows; j++) {
+			for (int w = 0; w < wordsPerRow; w++) {
+				if (_buf.remaining() < 64) {
+					flush();
+				}
+				long bits = grid.getWord(j, w);
+				int end = Math.min(64, cols - (w << 6));
+				int p = _buf.position();
+				for (int b = 0; b < end; b++) {
+					bytes[p + b] = (bits >>> b & 1) != 0 ? ALIVE : DEAD;
+				}
+				_buf.position(p + end);
+			}
+			put('\n');
+		}
+		for (int j = 0; j < trailer.length(); j++) {
+			put(trailer.charAt(j));
+		}
+		flush();
+	}
+
+	private void put(char c) throws IOException {
+		if (!_buf.hasRemaining()) {
+			flush();
+		}
+		_buf.put((byte) c);
+	}
+
+	private void flush() throws IOException {
+		_buf.flip();
+		while (_buf.hasRemaining()) {
+			_out.write(_buf);
+		}
+		_buf.clear();
+	}
+
+}
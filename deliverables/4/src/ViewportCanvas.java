@@ -0,0 +1,296 @@
+import java.awt.*;
+import java.awt.event.*;
+import java.awt.image.*;
+import javax.swing.*;
+
+public class ViewportCanvas extends JPanel {
+
+	// Shows only the part of the world in view, so drawing
+	// costs in proportion to the pixels on screen rather
+	// than the size of the world. Drag to pan, turn the
+	// mouse wheel to zoom, click to toggle a cell.
+	//
+	// Zoom level z >= 0 draws each cell 2^z pixels wide.
+	// Below 0, each pixel covers a 2^-z square of cells and
+	// is shaded by how many of them are alive, counted from
+	// the packed words: at most SAMPLES rows and SAMPLES
+	// words of each square are read, so a zoomed out frame
+	// reads a bounded number of words per pixel however big
+	// the world is. Squares small enough are counted in
+	// full.
+	//
+	// Cells which were alive before are not shown in green,
+	// as the canvas does, since that would mean going over
+	// the whole world every frame.
+
+	private static final int SAMPLES = 4;
+
+	private static final int MAX_ZOOM = 5;
+
+	private static final int ALIVE = Color.RED.getRGB();
+
+	private static final int DEAD = Color.GRAY.getRGB();
+
+	// Outside the world
+	private static final int BACKGROUND = Color.DARK_GRAY.getRGB();
+
+	// From no live cells in a square (gray) to all of them (red)
+	private static final int[] DENSITY = new int[256];
+
+	static {
+		Color dead = Color.GRAY;
+		Color alive = Color.RED;
+		for (int j = 0; j < DENSITY.length; j++) {
+			double t = j / 255.0;
+			int r = (int) Math.round(dead.getRed() + t * (alive.getRed() - dead.getRed()));
+			int g = (int) Math.round(dead.getGreen() + t * (alive.getGreen() - dead.getGreen()));
+			int b = (int) Math.round(dead.getBlue() + t * (alive.getBlue() - dead.getBlue()));
+			DENSITY[j] = new Color(r, g, b).getRGB();
+		}
+	}
+
+	private World _world;
+
+	// The cell at the centre of the view, and the zoom level
+	private double _centreRow;
+
+	private double _centreCol;
+
+	private int _zoom;
+
+	private boolean _fitted = false;
+
+	private BufferedImage _image;
+
+	private int[] _pixels;
+
+	/**
+	 * Show the world in a view of the given size, zoomed out far enough to see
+	 * all of it.
+	 */
+
+	public ViewportCanvas(World world, int width, int height) {
+		super();
+		_world = world;
+		setPreferredSize(new Dimension(width, height));
+		ViewportMouseListener listener = new ViewportMouseListener();
+		addMouseListener(listener);
+		addMouseMotionListener(listener);
+		addMouseWheelListener(listener);
+	}
+
+	/**
+	 * Zoom so the whole world fits in the view, and centre it.
+	 */
+
+	private void fit(int width, int height) {
+		int size = _world.getSize();
+		int side = Math.max(1, Math.min(width, height));
+		_zoom = 0;
+		while (_zoom < MAX_ZOOM && (long) size << (_zoom + 1) <= side) {
+			_zoom++;
+		}
+		while (_zoom > -30 && (size + (1L << -_zoom) - 1) >> -_zoom > side) {
+			_zoom--;
+		}
+		_centreRow = size / 2.0;
+		_centreCol = size / 2.0;
+		_fitted = true;
+	}
+
+	private double scale() {
+		return _zoom >= 0 ? (double) (1 << _zoom) : 1.0 / (1L << -_zoom);
+	}
+
+	/**
+	 * Redraw the image from the world's current generation. The world must be
+	 * locked.
+	 */
+
+	public void refresh() {
+		int width = Math.max(1, getWidth() > 0 ? getWidth() : getPreferredSize().width);
+		int height = Math.max(1, getHeight() > 0 ? getHeight() : getPreferredSize().height);
+		if (!_fitted) {
+			fit(width, height);
+		}
+		if (_image == null || _image.getWidth() != width || _image.getHeight() != height) {
+			_image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+			_pixels = ((DataBufferInt) _image.getRaster().getDataBuffer()).getData();
+		}
+
+		// Top left of the view, in world pixels: cell
+		// coordinates times the scale
+		double scale = scale();
+		long top = (long) Math.floor(_centreRow * scale - height / 2.0);
+		long left = (long) Math.floor(_centreCol * scale - width / 2.0);
+		if (_zoom >= 0) {
+			drawCells(top, left, width, height);
+		} else {
+			drawDensity(top, left, width, height);
+		}
+		repaint();
+	}
+
+	private void drawCells(long top, long left, int width, int height) {
+		BitGrid cells = _world.getCells();
+		int size = _world.getSize();
+		for (int y = 0; y < height; y++) {
+			long row = (top + y) >> _zoom;
+			int p = y * width;
+			if (row < 0 || row >= size) {
+				java.util.Arrays.fill(_pixels, p, p + width, BACKGROUND);
+				continue;
+			}
+			for (int x = 0; x < width; x++, p++) {
+				long col = (left + x) >> _zoom;
+				if (col < 0 || col >= size) {
+					_pixels[p] = BACKGROUND;
+				} else {
+					long word = cells.getWord((int) row, (int) (col >>> 6));
+					_pixels[p] = (word >>> col & 1) != 0 ? ALIVE : DEAD;
+				}
+			}
+		}
+	}
+
+	private void drawDensity(long top, long left, int width, int height) {
+		BitGrid cells = _world.getCells();
+		int size = _world.getSize();
+		int shift = -_zoom;
+		long k = 1L << shift;
+		for (int y = 0; y < height; y++) {
+			long row0 = (top + y) << shift;
+			int p = y * width;
+			if (row0 < 0 || row0 >= size) {
+				java.util.Arrays.fill(_pixels, p, p + width, BACKGROUND);
+				continue;
+			}
+			int rows = (int) Math.min(k, size - row0);
+			int rowStep = Math.max(1, rows / SAMPLES);
+
+			for (int x = 0; x < width; x++, p++) {
+				long col0 = (left + x) << shift;
+				if (col0 < 0 || col0 >= size) {
+					_pixels[p] = BACKGROUND;
+					continue;
+				}
+				int cols = (int) Math.min(k, size - col0);
+				long live = 0;
+				long seen = 0;
+				for (int r = 0; r < rows; r += rowStep) {
+					int row = (int) row0 + r;
+					if (k <= 64) {
+						// The square lies within one word
+						long mask = cols == 64 ? -1L : ((1L << cols) - 1) << col0;
+						live += Long.bitCount(cells.getWord(row, (int) (col0 >>> 6)) & mask);
+						seen += cols;
+					} else {
+						int firstWord = (int) (col0 >>> 6);
+						int words = (cols + 63) >>> 6;
+						int wordStep = Math.max(1, words / SAMPLES);
+						for (int w = 0; w < words; w += wordStep) {
+							live += Long.bitCount(cells.getWord(row, firstWord + w));
+							seen += Math.min(64, size - ((long) (firstWord + w) << 6));
+						}
+					}
+				}
+				if (live == 0) {
+					_pixels[p] = DENSITY[0];
+				} else {
+					// Square root, so a few live cells still show
+					int shade = 64 + (int) (191 * Math.sqrt((double) live / seen));
+					_pixels[p] = DENSITY[Math.min(255, shade)];
+				}
+			}
+		}
+	}
+
+	protected void paintComponent(Graphics g) {
+		super.paintComponent(g);
+		if (_image == null || _image.getWidth() != getWidth() || _image.getHeight() != getHeight()) {
+			_world.getLock().lock();
+			try {
+				refresh();
+			} finally {
+				_world.getLock().unlock();
+			}
+		}
+		g.drawImage(_image, 0, 0, null);
+	}
+
+	/**
+	 * Refresh with the world locked, after a change to the view.
+	 */
+
+	private void viewChanged() {
+		_world.getLock().lock();
+		try {
+			refresh();
+		} finally {
+			_world.getLock().unlock();
+		}
+	}
+
+	class ViewportMouseListener extends MouseAdapter {
+
+		private int _lastX;
+
+		private int _lastY;
+
+		private boolean _dragged;
+
+		public void mousePressed(MouseEvent e) {
+			_lastX = e.getX();
+			_lastY = e.getY();
+			_dragged = false;
+		}
+
+		public void mouseDragged(MouseEvent e) {
+			double scale = scale();
+			_centreCol -= (e.getX() - _lastX) / scale;
+			_centreRow -= (e.getY() - _lastY) / scale;
+			_lastX = e.getX();
+			_lastY = e.getY();
+			_dragged = true;
+			viewChanged();
+		}
+
+		public void mouseReleased(MouseEvent e) {
+			if (_dragged || _zoom < 0) {
+				// Too far out to pick a single cell
+				return;
+			}
+			double scale = scale();
+			long row = (long) Math.floor(_centreRow + (e.getY() - getHeight() / 2.0) / scale);
+			long col = (long) Math.floor(_centreCol + (e.getX() - getWidth() / 2.0) / scale);
+			int size = _world.getSize();
+			if (row < 0 || row >= size || col < 0 || col >= size) {
+				return;
+			}
+			_world.getLock().lock();
+			try {
+				_world.set((int) row, (int) col, !_world.get((int) row, (int) col));
+				refresh();
+			} finally {
+				_world.getLock().unlock();
+			}
+		}
+
+		public void mouseWheelMoved(MouseWheelEvent e) {
+			int zoom = Math.max(-30, Math.min(MAX_ZOOM, _zoom - e.getWheelRotation()));
+			if (zoom == _zoom) {
+				return;
+			}
+			// Keep the cell under the pointer where it is
+			double dx = e.getX() - getWidth() / 2.0;
+			double dy = e.getY() - getHeight() / 2.0;
+			double before = scale();
+			_zoom = zoom;
+			double after = scale();
+			_centreCol += dx / before - dx / after;
+			_centreRow += dy / before - dy / after;
+			viewChanged();
+		}
+	}
+
+}
@@ -0,0 +1,129 @@
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseListener;
+import java.awt.image.BufferedImage;
+
+import org.junit.Test;
+
+public class ViewportCanvasTest {
+
+	// A grid which counts the words read from it, to see how much of the
+	// world a frame looks at.
+
+	static class CountingGrid extends BitGrid {
+
+		long reads;
+
+		CountingGrid(int size) {
+			super(size, size);
+		}
+
+		public long getWord(int row, int word) {
+			reads++;
+			return super.getWord(row, word);
+		}
+
+	}
+
+	// Draw the view of the world into an image, as the screen would,
+	// without needing a screen.
+	private static BufferedImage paint(ViewportCanvas view, World w) {
+		view.setSize(view.getPreferredSize());
+		w.getLock().lock();
+		try {
+			view.refresh();
+		} finally {
+			w.getLock().unlock();
+		}
+		BufferedImage image = new BufferedImage(view.getWidth(), view.getHeight(), BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = image.createGraphics();
+		view.paint(g);
+		g.dispose();
+		return image;
+	}
+
+	private static Color at(BufferedImage image, int x, int y) {
+		return new Color(image.getRGB(x, y));
+	}
+
+	// A small world is zoomed in to fit and centred: each cell is a square
+	// of pixels, red or gray, with dark gray around the world. Clicking a
+	// cell toggles it.
+
+	@Test
+	public void testZoomedIn() {
+		World w = new World(20);
+		w.set(3, 4, true);
+		w.set(19, 0, true);
+		ViewportCanvas view = new ViewportCanvas(w, 200, 200);
+		BufferedImage image = paint(view, w);
+
+		// 8 pixels a cell, so the world is 160 pixels across and
+		// starts 20 pixels in
+		assertEquals(Color.RED, at(image, 20 + 4 * 8, 20 + 3 * 8));
+		assertEquals(Color.RED, at(image, 20 + 4 * 8 + 7, 20 + 3 * 8 + 7));
+		assertEquals(Color.GRAY, at(image, 20 + 5 * 8, 20 + 3 * 8));
+		assertEquals(Color.RED, at(image, 20, 20 + 19 * 8 + 7));
+		assertEquals(Color.DARK_GRAY, at(image, 19, 100));
+		assertEquals(Color.DARK_GRAY, at(image, 100, 180));
+
+		MouseEvent e = new MouseEvent(view, MouseEvent.MOUSE_RELEASED, 0, 0, 20 + 10 * 8 + 3, 20 + 2 * 8 + 3, 1,
+				false);
+		for (MouseListener l : view.getMouseListeners()) {
+			l.mousePressed(e);
+			l.mouseReleased(e);
+		}
+		assertTrue(w.get(2, 10));
+		assertEquals(3, w.population());
+	}
+
+	// Zoomed out, each pixel is shaded by how much of its square of cells
+	// is alive: red when all of it is, gray when none is, in between for
+	// part.
+
+	@Test
+	public void testDensity() {
+		World w = new World(4096);
+		// 64 cells a pixel, with the world starting 18 pixels in
+		for (int j = 0; j < 64; j++) {
+			for (int k = 0; k < 64; k++) {
+				w.set(j, k, true);
+				w.set(64 + j, k, k < 32);
+			}
+		}
+		w.set(4032, 4095, true);
+		BufferedImage image = paint(new ViewportCanvas(w, 100, 100), w);
+		assertEquals(Color.RED, at(image, 18, 18));
+		Color part = at(image, 18, 19);
+		assertTrue(part.getRed() > Color.GRAY.getRed() && part.getRed() < 255);
+		assertTrue(part.getGreen() < Color.GRAY.getGreen() && part.getGreen() > 0);
+		assertEquals(Color.GRAY, at(image, 19, 18));
+		assertNotEquals(Color.GRAY, at(image, 18 + 63, 18 + 63));
+		assertEquals(Color.DARK_GRAY, at(image, 17, 50));
+		assertEquals(Color.DARK_GRAY, at(image, 50, 18 + 64));
+	}
+
+	// However big the world, a zoomed out frame reads at most SAMPLES rows
+	// of SAMPLES words for each pixel, still finding a full square of live
+	// cells.
+
+	@Test
+	public void testFrameCostBoundedByPixels() {
+		CountingGrid cells = new CountingGrid(8192);
+		for (int j = 0; j < 128; j++) {
+			cells.fill(j, 0, 128);
+		}
+		World w = new World(cells);
+		cells.reads = 0;
+		BufferedImage image = paint(new ViewportCanvas(w, 64, 64), w);
+		assertTrue(cells.reads + " words read", cells.reads <= 64 * 64 * 4 * 4);
+		// 128 cells a pixel, with the world starting 0 pixels in
+		assertEquals(Color.RED, at(image, 0, 0));
+		assertEquals(Color.GRAY, at(image, 1, 0));
+		assertEquals(Color.GRAY, at(image, 63, 63));
+	}
+
+}
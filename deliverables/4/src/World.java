@@ -1,13 +1,550 @@
 import java.util.*;
+import java.util.concurrent.locks.*;
 
 public class World {
 
+	// Current generation
+	private BitGrid _cells;
+
+	// Scratch space the engine writes the next generation
+	// into. The two grids are swapped after every step, so
+	// stepping allocates nothing, and right after a step
+	// this still holds the previous generation.
+	private BitGrid _next;
+
+	// Whether _next holds the generation before _cells
+	private boolean _canUndo = false;
+
+	private int _size;
+
+	private long _generation = 0;
+
+	// Held by whoever is using the world when more than
+	// one thread may be. World itself never takes it.
+	private final ReentrantLock _lock = new ReentrantLock(true);
+
+	private LifeEngine _engine = new ScalarEngine();
+
+	private Rule _rule = Rule.CONWAY;
+
+	// Active-region tracking. The grid is cut into tiles
+	// TILE_ROWS high and one word (64 cells) wide. A tile
+	// only needs computing if it or one of its neighbors
+	// changed in the last step or was edited since. Any
+	// other tile is the same in both grids already, so it
+	// is simply left alone.
+
+	public static final int TILE_ROWS = 64;
+
+	private boolean _tracking = true;
+
+	private int _tileRows;
+
+	private int _tileCols;
+
+	// Tiles changed by the last step or edited since, one
+	// bit per tile, so a world of billions of cells keeps
+	// its tracking small on the heap too
+	private final BitSet _dirty = new BitSet();
+
+	// Tiles computed in the current step
+	private final BitSet _active = new BitSet();
+
+	// fromRow, toRow, fromWord, toWord of each run of
+	// active tiles side by side in the same tile row. The
+	// engine gets whole runs, so it can work on more than
+	// one word of a row at a time. Grown as needed.
+	private int[] _regions = new int[64];
+
+	// Whether each run changed in the current step
+	private boolean[] _changed = new boolean[16];
+
+	private int _regionCount;
+
+	private int _activeTileCount;
+
+	// Multi-level undo, or null to keep just the one
+	// generation in _next
+	private History _history;
+
+	// Goes up on every change not made by a step
+	private long _editCount = 0;
+
+	// Told about every step, in the order they were added
+	private final ArrayList<StepListener> _listeners = new ArrayList<StepListener>();
+
+	private final ChangeVisitor _markDirty = new ChangeVisitor() {
+		public void changed(int row, int word, long flips) {
+			_dirty.set((row / TILE_ROWS) * _tileCols + word);
+		}
+	};
+
+	/**
+	 * Create an empty size x size world.
+	 */
+
 	public World(int size) {
+		this(size, false);
+	}
 
+	/**
+	 * Create an empty size x size world, keeping both generations outside the
+	 * Java heap if offHeap is true.
+	 */
+
+	public World(int size, boolean offHeap) {
+		this(offHeap ? new OffHeapBitGrid(size, size) : new BitGrid(size, size));
+	}
+
+	/**
+	 * Create a world around an empty square grid, stepping into another like it.
+	 */
+
+	World(BitGrid cells) {
+		_size = cells.getRows();
+		_cells = cells;
+		_next = _cells.blank();
+		_tileRows = (_size + TILE_ROWS - 1) / TILE_ROWS;
+		_tileCols = _cells.getWordsPerRow();
+		markAllDirty();
 	}
 
+	/**
+	 * Create a world from lines in the format written by toString(). There is
+	 * one line per row; a '.' is a dead cell and anything else is a live one.
+	 * Trailing empty lines are ignored.
+	 */
+
 	public World(ArrayList<String> lines) {
+		this(countRows(lines));
+		load(lines);
+	}
+
+	private static int countRows(ArrayList<String> lines) {
+		int rows = lines.size();
+		while (rows > 0 && lines.get(rows - 1).isEmpty()) {
+			rows--;
+		}
+		return rows;
+	}
+
+	public int getSize() {
+		return _size;
+	}
+
+	public boolean isOffHeap() {
+		return _cells instanceof OffHeapBitGrid;
+	}
+
+	public long getGeneration() {
+		return _generation;
+	}
+
+	public void setGeneration(long generation) {
+		_generation = generation;
+	}
+
+	public ReentrantLock getLock() {
+		return _lock;
+	}
+
+	public LifeEngine getEngine() {
+		return _engine;
+	}
+
+	public void setEngine(LifeEngine engine) {
+		_engine = engine;
+	}
+
+	public Rule getRule() {
+		return _rule;
+	}
+
+	/**
+	 * Step by a different rule from now on.
+	 */
+
+	public void setRule(Rule rule) {
+		_rule = rule;
+		// Tiles which were settled under the old
+		// rule need not be under the new one.
+		markAllDirty();
+	}
+
+	public boolean isTracking() {
+		return _tracking;
+	}
+
+	/**
+	 * Turn active-region tracking on or off. With it off, every cell is computed
+	 * every step.
+	 */
+
+	public void setTracking(boolean tracking) {
+		_tracking = tracking;
+		markAllDirty();
+	}
+
+	/**
+	 * Number of tiles computed in the last step.
+	 */
+
+	public int getActiveTileCount() {
+		return _activeTileCount;
+	}
+
+	public int getTileCount() {
+		return _tileRows * _tileCols;
+	}
+
+	public History getHistory() {
+		return _history;
+	}
+
+	/**
+	 * Keep the generations of roughly the last maxBytes worth of changes, so
+	 * undo() can go back more than one step. Zero turns the history off.
+	 */
+
+	public void setHistoryLimit(long maxBytes) {
+		_history = maxBytes > 0 ? new History(maxBytes) : null;
+	}
+
+	public void addStepListener(StepListener listener) {
+		_listeners.add(listener);
+	}
+
+	public void removeStepListener(StepListener listener) {
+		_listeners.remove(listener);
+	}
+
+	/**
+	 * A count which goes up whenever the cells are changed other than by a step:
+	 * edits, loads, clears and undos. Anything following the world step by step
+	 * can compare it to tell when it has to start again.
+	 */
+
+	public long getEditCount() {
+		return _editCount;
+	}
+
+	/**
+	 * Mark every tile as changed, so the next step computes all of them, and
+	 * forget everything undo() could go back to, since it led to other cells.
+	 * This must be called after writing to getCells() directly.
+	 */
+
+	public void invalidate() {
+		markAllDirty();
+		_canUndo = false;
+		if (_history != null) {
+			_history.clear();
+		}
+	}
+
+	private void markAllDirty() {
+		_dirty.set(0, getTileCount());
+		_editCount++;
+	}
+
+	/**
+	 * The current generation. Callers must not hold on to it across a step(),
+	 * since the grids are swapped. Call invalidate() after changing it.
+	 */
+
+	public BitGrid getCells() {
+		return _cells;
+	}
+
+	public boolean get(int row, int col) {
+		return _cells.get(row, col);
+	}
+
+	public void set(int row, int col, boolean alive) {
+		if (_history != null) {
+			long before = _cells.getWord(row, col >>> 6);
+			_cells.set(row, col, alive);
+			long flips = before ^ _cells.getWord(row, col >>> 6);
+			if (flips != 0) {
+				_history.recordEdit(row, col >>> 6, flips);
+			}
+		} else {
+			_cells.set(row, col, alive);
+		}
+		_dirty.set((row / TILE_ROWS) * _tileCols + (col >>> 6));
+		_editCount++;
+	}
+
+	/**
+	 * Advance the world by one generation.
+	 */
+
+	public void step() {
+		if (_tracking) {
+			stepActiveTiles();
+		} else {
+			_engine.step(_rule, _cells, _next, 0, _size, 0, _tileCols);
+			_activeTileCount = getTileCount();
+		}
+		BitGrid tmp = _cells;
+		_cells = _next;
+		_next = tmp;
+		_generation++;
+		_canUndo = true;
+
+		if (_history != null) {
+			_history.beginStep();
+			forEachChange(_history);
+			_history.endStep(_generation - 1);
+		}
+
+		for (int j = 0; j < _listeners.size(); j++) {
+			_listeners.get(j).stepped(this);
+		}
+	}
+
+	/**
+	 * Report every word changed by the last step to the visitor. This only works
+	 * straight after a step, while the previous generation is still in the back
+	 * buffer.
+	 */
+
+	public void forEachChange(ChangeVisitor visitor) {
+		if (!_canUndo) {
+			throw new IllegalStateException("No step to report changes for");
+		}
+		if (_tracking) {
+			// Only the tiles computed can have changed
+			for (int j = 0; j < _regionCount; j++) {
+				int r = 4 * j;
+				for (int row = _regions[r]; row < _regions[r + 1]; row++) {
+					for (int word = _regions[r + 2]; word < _regions[r + 3]; word++) {
+						long flips = _cells.getWord(row, word) ^ _next.getWord(row, word);
+						if (flips != 0) {
+							visitor.changed(row, word, flips);
+						}
+					}
+				}
+			}
+		} else {
+			for (int row = 0; row < _size; row++) {
+				for (int word = 0; word < _tileCols; word++) {
+					long flips = _cells.getWord(row, word) ^ _next.getWord(row, word);
+					if (flips != 0) {
+						visitor.changed(row, word, flips);
+					}
+				}
+			}
+		}
+	}
+
+	private void stepActiveTiles() {
+		_active.clear();
+		for (int t = _dirty.nextSetBit(0); t >= 0; t = _dirty.nextSetBit(t + 1)) {
+			int tr = t / _tileCols;
+			int tc = t % _tileCols;
+			for (int dr = -1; dr <= 1; dr++) {
+				int r = (tr + dr + _tileRows) % _tileRows;
+				for (int dc = -1; dc <= 1; dc++) {
+					_active.set(r * _tileCols + (tc + dc + _tileCols) % _tileCols);
+				}
+			}
+		}
+
+		int count = 0;
+		int tiles = 0;
+		for (int t = _active.nextSetBit(0); t >= 0; t = _active.nextSetBit(t)) {
+			// A run ends at the first inactive tile or the
+			// end of its tile row, whichever comes first
+			int tr = t / _tileCols;
+			int end = Math.min(_active.nextClearBit(t), (tr + 1) * _tileCols);
+			if (4 * count == _regions.length) {
+				_regions = Arrays.copyOf(_regions, 2 * _regions.length);
+				_changed = Arrays.copyOf(_changed, 2 * _changed.length);
+			}
+			int fromRow = tr * TILE_ROWS;
+			_regions[4 * count] = fromRow;
+			_regions[4 * count + 1] = Math.min(_size, fromRow + TILE_ROWS);
+			_regions[4 * count + 2] = t - tr * _tileCols;
+			_regions[4 * count + 3] = end - tr * _tileCols;
+			tiles += end - t;
+			count++;
+			t = end;
+		}
+
+		_engine.stepRegions(_rule, _cells, _next, _regions, _changed, count);
+
+		_dirty.clear();
+		for (int j = 0; j < count; j++) {
+			if (!_changed[j]) {
+				continue;
+			}
+			int r = 4 * j;
+			int tileRow = _regions[r] / TILE_ROWS;
+			if (_regions[r + 3] - _regions[r + 2] == 1) {
+				_dirty.set(tileRow * _tileCols + _regions[r + 2]);
+				continue;
+			}
+			// The engine only says the run changed, so
+			// find which of its tiles did.
+			for (int word = _regions[r + 2]; word < _regions[r + 3]; word++) {
+				if (tileChanged(_regions[r], _regions[r + 1], word)) {
+					_dirty.set(tileRow * _tileCols + word);
+				}
+			}
+		}
+		_regionCount = count;
+		_activeTileCount = tiles;
+	}
+
+	/**
+	 * Whether the last step changed anything in the given rows of one word
+	 * column. Only valid before the grids are swapped.
+	 */
+
+	private boolean tileChanged(int fromRow, int toRow, int word) {
+		for (int row = fromRow; row < toRow; row++) {
+			if (_cells.getWord(row, word) != _next.getWord(row, word)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public boolean canUndo() {
+		return _canUndo;
+	}
+
+	/**
+	 * Go back to the generation before the last step, discarding any edits made
+	 * since. Without a history, or once it is used up, only the previous
+	 * generation is kept, so this works once per step. Returns whether there
+	 * was anything to undo.
+	 */
+
+	public boolean undo() {
+		_editCount++;
+		if (_history != null) {
+			long generation = _history.undo(_cells, _markDirty);
+			if (generation >= 0) {
+				_generation = generation;
+				_canUndo = false;
+				return true;
+			}
+			// A step too big for the history can still be
+			// undone from the back buffer.
+			if (!_canUndo) {
+				return false;
+			}
+			_history.clear();
+		} else if (!_canUndo) {
+			return false;
+		}
+		BitGrid tmp = _cells;
+		_cells = _next;
+		_next = tmp;
+		_generation--;
+		_canUndo = false;
+		markAllDirty();
+		return true;
+	}
+
+	/**
+	 * The generation undo() would go back to, or null if there is none.
+	 */
+
+	public BitGrid getPreviousCells() {
+		return _canUndo ? _next : null;
+	}
+
+	/**
+	 * Advance the world by the given number of generations.
+	 */
+
+	public void step(long generations) {
+		for (long j = 0; j < generations; j++) {
+			step();
+		}
+	}
+
+	/**
+	 * Kill every cell in the world. Nothing before this can be undone.
+	 */
+
+	public void clear() {
+		_cells.clear();
+		invalidate();
+		_generation = 0;
+	}
+
+	/**
+	 * Replace the cells of this world with lines in the format written by
+	 * toString(). Missing lines and characters are dead cells. Nothing before
+	 * this can be undone.
+	 */
+
+	public void load(ArrayList<String> lines) {
+		_cells.clear();
+		int rows = Math.min(_size, lines.size());
+		for (int j = 0; j < rows; j++) {
+			String l = lines.get(j);
+			int cols = Math.min(_size, l.length());
+			for (int k = 0; k < cols; k++) {
+				if (l.charAt(k) != '.') {
+					_cells.set(j, k, true);
+				}
+			}
+		}
+		invalidate();
+		_generation = 0;
+	}
+
+	/**
+	 * Replace the cells of this world with those of a grid of the same size.
+	 * Nothing before this can be undone.
+	 */
+
+	public void load(BitGrid cells) {
+		_cells.copyFrom(cells);
+		invalidate();
+		_generation = 0;
+	}
+
+	/**
+	 * Overwrite this world with the cells and generation of another world of the
+	 * same size. Nothing before this can be undone.
+	 */
+
+	public void copyFrom(World other) {
+		_cells.copyFrom(other._cells);
+		invalidate();
+		_generation = other._generation;
+	}
+
+	/**
+	 * Make an independent copy of this world, using the same engine.
+	 */
+
+	public World copy() {
+		World w = new World(_size, isOffHeap());
+		w.setEngine(_engine);
+		w.setRule(_rule);
+		w.setTracking(_tracking);
+		w.copyFrom(this);
+		return w;
+	}
+
+	public long population() {
+		return _cells.population();
+	}
+
+	/**
+	 * One line per row, with an "X" for each live cell and a "." for each dead
+	 * one.
+	 */
 
+	public String toString() {
+		return _cells.toString();
 	}
 
 }
@@ -0,0 +1,161 @@
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+public class WorldTest {
+
+	// Lines for a 16 x 16 world with a blinker across row 8, in the
+	// format World(lines) reads.
+	private static ArrayList<String> lines() {
+		ArrayList<String> lines = new ArrayList<String>();
+		for (int j = 0; j < 16; j++) {
+			lines.add(j == 8 ? "......XXX......." : "................");
+		}
+		return lines;
+	}
+
+	private static World blinker(long historyBytes) {
+		World w = new World(16);
+		w.setHistoryLimit(historyBytes);
+		w.set(8, 6, true);
+		w.set(8, 7, true);
+		w.set(8, 8, true);
+		return w;
+	}
+
+	// With no history, a step can be undone once from the back buffer.
+
+	@Test
+	public void testUndoOneStepWithoutHistory() {
+		World w = blinker(0);
+		String before = w.toString();
+		w.step();
+		assertTrue(w.undo());
+		assertEquals(before, w.toString());
+		assertEquals(0, w.getGeneration());
+		assertFalse(w.undo());
+		assertEquals(0, w.getGeneration());
+	}
+
+	// With a history, every step can be undone in turn.
+
+	@Test
+	public void testUndoManyStepsWithHistory() {
+		World w = blinker(1 << 20);
+		ArrayList<String> seen = new ArrayList<String>();
+		for (int j = 0; j < 5; j++) {
+			seen.add(w.toString());
+			w.step();
+		}
+		for (int j = 4; j >= 0; j--) {
+			assertTrue(w.undo());
+			assertEquals(seen.get(j), w.toString());
+			assertEquals(j, w.getGeneration());
+		}
+		assertFalse(w.undo());
+		assertEquals(0, w.getGeneration());
+	}
+
+	// Undoing straight after a load has nothing to go back to, with or
+	// without a history, and must not swap in the grid from before it.
+
+	@Test
+	public void testUndoAfterLoad() {
+		for (long bytes : new long[] { 0, 1 << 20 }) {
+			World w = blinker(bytes);
+			w.step();
+			w.step();
+			w.load(lines());
+			String loaded = w.toString();
+			assertFalse(w.undo());
+			assertEquals(loaded, w.toString());
+			assertEquals(0, w.getGeneration());
+		}
+	}
+
+	// The same goes for clearing the world.
+
+	@Test
+	public void testUndoAfterClear() {
+		for (long bytes : new long[] { 0, 1 << 20 }) {
+			World w = blinker(bytes);
+			w.step();
+			w.clear();
+			assertFalse(w.undo());
+			assertEquals(0, w.population());
+			assertEquals(0, w.getGeneration());
+		}
+	}
+
+	// After a load, steps taken since can be undone, but no further.
+
+	@Test
+	public void testUndoStopsAtLoad() {
+		World w = blinker(1 << 20);
+		w.step();
+		w.load(lines());
+		String loaded = w.toString();
+		w.step();
+		w.step();
+		assertTrue(w.undo());
+		assertTrue(w.undo());
+		assertEquals(loaded, w.toString());
+		assertEquals(0, w.getGeneration());
+		assertFalse(w.undo());
+		assertEquals(0, w.getGeneration());
+	}
+
+	// Copying another world in is a load too.
+
+	@Test
+	public void testUndoAfterCopyFrom() {
+		World w = blinker(0);
+		w.step();
+		w.copyFrom(new World(lines()));
+		assertFalse(w.undo());
+		assertEquals(0, w.getGeneration());
+	}
+
+	// Stepping swaps the two grids rather than making new ones: the grid
+	// just written becomes the world's cells, and the one it replaced
+	// still holds the generation before, for undo.
+
+	@Test
+	public void testStepSwapsBuffers() {
+		World w = TestWorlds.soup(100, 1);
+		BitGrid first = w.getCells();
+		String before = w.toString();
+		w.step();
+		BitGrid second = w.getCells();
+		assertNotSame(first, second);
+		assertSame(first, w.getPreviousCells());
+		assertEquals(before, w.getPreviousCells().toString());
+		w.step();
+		assertSame(first, w.getCells());
+		assertSame(second, w.getPreviousCells());
+	}
+
+	// Once warmed up, stepping allocates nothing, on the heap or off it,
+	// so continuous running makes no garbage.
+
+	@Test
+	public void testSteppingAllocatesNothing() {
+		java.lang.management.ThreadMXBean bean = java.lang.management.ManagementFactory.getThreadMXBean();
+		org.junit.Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+		org.junit.Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+		for (boolean offHeap : new boolean[] { false, true }) {
+			World w = new World(512, offHeap);
+			w.copyFrom(TestWorlds.soup(512, 2));
+			w.step(200);
+			long id = Thread.currentThread().getId();
+			long before = threads.getThreadAllocatedBytes(id);
+			w.step(1000);
+			long allocated = threads.getThreadAllocatedBytes(id) - before;
+			assertTrue(allocated + " bytes allocated", allocated < 1 << 16);
+		}
+	}
+
+}
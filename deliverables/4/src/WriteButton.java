@@ -16,9 +16,7 @@ public class WriteButton extends JButton {
 
 		public void actionPerformed(ActionEvent e) {
 
-			String toWrite = _m.toString();
-
-			boolean success = FileAccess.saveFile("backup.txt", toWrite);
+			boolean success = _m.save("backup.txt");
 
 			if (!success) {
 				JOptionPane.showMessageDialog((Component) e.getSource(), "COULD NOT WRITE FILE backup.txt",
@@ -0,0 +1,181 @@
+import java.util.concurrent.atomic.*;
+
+import jdk.incubator.vector.*;
+
+public class VectorEngine implements LifeEngine {
+
+	// SwarEngine's bit-wise adders, run on as many words at
+	// once as the CPU's widest vectors hold (eight, with
+	// AVX-512). Each word still holds 64 cells, so a vector
+	// computes up to 512 cells per operation.
+	//
+	// This needs the incubating Vector API, so it is kept
+	// out of src/ and built separately; see runVector.sh.
+	// Engines.create() loads it by name and falls back to
+	// SwarEngine when it is missing or the module is not
+	// enabled.
+	//
+	// A vector of words w .. w + n - 1 needs the words on
+	// either side for the west and east shifts, so the
+	// first and last word of a row, and any left over at
+	// the end of a region, go through SwarEngine. World
+	// hands over runs of adjacent active tiles, so regions
+	// are usually many words wide.
+
+	private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+	private static final int LANES = SPECIES.length();
+
+	private final SwarEngine _edges = new SwarEngine();
+
+	// Words computed by the vector loop rather than by
+	// SwarEngine, over all steps so far
+	private final LongAdder _vectorWords = new LongAdder();
+
+	/**
+	 * Number of words computed with vectors so far. Anything left over goes
+	 * through SwarEngine one word at a time.
+	 */
+
+	public long getVectorWords() {
+		return _vectorWords.sum();
+	}
+
+	public boolean step(Rule rule, BitGrid src, BitGrid dst, int fromRow, int toRow, int fromWord, int toWord) {
+		long[] in = src.words();
+		long[] out = dst.words();
+		if (in == null || out == null) {
+			// Not on the heap, so no arrays to load vectors from
+			return _edges.step(rule, src, dst, fromRow, toRow, fromWord, toWord);
+		}
+		int rows = src.getRows();
+		int wordsPerRow = src.getWordsPerRow();
+		boolean conway = rule.isConway();
+		long[] birth = rule.getBirthMasks();
+		long[] flip = rule.getFlipMasks();
+
+		// Vectors may cover words 1 .. wordsPerRow - 2
+		int vectorFrom = Math.max(fromWord, 1);
+		int vectorTo = Math.min(toWord, wordsPerRow - 1);
+
+		boolean changed = false;
+		LongVector diff = LongVector.zero(SPECIES);
+		long vectorWords = 0;
+
+		for (int j = fromRow; j < toRow; j++) {
+			int up = (j == 0 ? rows - 1 : j - 1) * wordsPerRow;
+			int mid = j * wordsPerRow;
+			int down = (j == rows - 1 ? 0 : j + 1) * wordsPerRow;
+
+			int w = fromWord;
+			if (w < vectorFrom) {
+				changed |= _edges.step(rule, src, dst, j, j + 1, w, vectorFrom);
+				w = vectorFrom;
+			}
+			for (; w + LANES <= vectorTo; w += LANES) {
+				LongVector alive = LongVector.fromArray(SPECIES, in, mid + w);
+
+				LongVector a = west(in, up + w);
+				LongVector b = LongVector.fromArray(SPECIES, in, up + w);
+				LongVector c = east(in, up + w);
+				LongVector n0 = a.lanewise(VectorOperators.XOR, b).lanewise(VectorOperators.XOR, c);
+				LongVector n1 = a.and(b).or(c.and(a.lanewise(VectorOperators.XOR, b)));
+
+				a = west(in, down + w);
+				b = LongVector.fromArray(SPECIES, in, down + w);
+				c = east(in, down + w);
+				LongVector s0 = a.lanewise(VectorOperators.XOR, b).lanewise(VectorOperators.XOR, c);
+				LongVector s1 = a.and(b).or(c.and(a.lanewise(VectorOperators.XOR, b)));
+
+				a = west(in, mid + w);
+				c = east(in, mid + w);
+				LongVector m0 = a.lanewise(VectorOperators.XOR, c);
+				LongVector m1 = a.and(c);
+
+				LongVector ones = n0.lanewise(VectorOperators.XOR, s0).lanewise(VectorOperators.XOR, m0);
+				LongVector carry = n0.and(s0).or(m0.and(n0.lanewise(VectorOperators.XOR, s0)));
+
+				LongVector t0 = n1.lanewise(VectorOperators.XOR, s1).lanewise(VectorOperators.XOR, m1);
+				LongVector t1 = n1.and(s1).or(m1.and(n1.lanewise(VectorOperators.XOR, s1)));
+				LongVector twos = t0.lanewise(VectorOperators.XOR, carry);
+				LongVector c4 = t0.and(carry);
+
+				LongVector fours = t1.lanewise(VectorOperators.XOR, c4);
+				LongVector eights = t1.and(c4);
+
+				LongVector next;
+				if (conway) {
+					next = twos.and(ones.or(alive)).lanewise(VectorOperators.AND_NOT, fours)
+							.lanewise(VectorOperators.AND_NOT, eights);
+				} else {
+					next = lookup(birth, flip, alive, ones, twos, fours, eights);
+				}
+
+				diff = diff.or(next.lanewise(VectorOperators.XOR, alive));
+				next.intoArray(out, mid + w);
+				vectorWords += LANES;
+			}
+			if (w < toWord) {
+				changed |= _edges.step(rule, src, dst, j, j + 1, w, toWord);
+			}
+		}
+		if (vectorWords != 0) {
+			_vectorWords.add(vectorWords);
+		}
+		return changed || diff.reduceLanes(VectorOperators.OR) != 0;
+	}
+
+	/**
+	 * Words at offset i .. i + LANES - 1 shifted so each bit holds the cell to
+	 * its west. The word before i must be in the same row.
+	 */
+
+	private static LongVector west(long[] words, int i) {
+		LongVector word = LongVector.fromArray(SPECIES, words, i);
+		LongVector before = LongVector.fromArray(SPECIES, words, i - 1);
+		return word.lanewise(VectorOperators.LSHL, 1).or(before.lanewise(VectorOperators.LSHR, 63));
+	}
+
+	/**
+	 * Words at offset i .. i + LANES - 1 shifted so each bit holds the cell to
+	 * its east. The word after the last must be in the same row.
+	 */
+
+	private static LongVector east(long[] words, int i) {
+		LongVector word = LongVector.fromArray(SPECIES, words, i);
+		LongVector after = LongVector.fromArray(SPECIES, words, i + 1);
+		return word.lanewise(VectorOperators.LSHR, 1).or(after.lanewise(VectorOperators.LSHL, 63));
+	}
+
+	/**
+	 * SwarEngine's multiplexer tree for rules other than Conway's.
+	 */
+
+	private static LongVector lookup(long[] birth, long[] flip, LongVector alive, LongVector ones,
+			LongVector twos, LongVector fours, LongVector eights) {
+		LongVector h0 = mux(ones, next(birth, flip, alive, 1), next(birth, flip, alive, 0));
+		LongVector h1 = mux(ones, next(birth, flip, alive, 3), next(birth, flip, alive, 2));
+		LongVector h2 = mux(ones, next(birth, flip, alive, 5), next(birth, flip, alive, 4));
+		LongVector h3 = mux(ones, next(birth, flip, alive, 7), next(birth, flip, alive, 6));
+		LongVector i0 = mux(twos, h1, h0);
+		LongVector i1 = mux(twos, h3, h2);
+		return mux(eights, next(birth, flip, alive, 8), mux(fours, i1, i0));
+	}
+
+	/**
+	 * Each cell's next state if it had n neighbors.
+	 */
+
+	private static LongVector next(long[] birth, long[] flip, LongVector alive, int n) {
+		return alive.and(flip[n]).lanewise(VectorOperators.XOR, birth[n]);
+	}
+
+	/**
+	 * Bits of hi where sel is set and of lo elsewhere.
+	 */
+
+	private static LongVector mux(LongVector sel, LongVector hi, LongVector lo) {
+		return lo.lanewise(VectorOperators.XOR, sel.and(hi.lanewise(VectorOperators.XOR, lo)));
+	}
+
+}